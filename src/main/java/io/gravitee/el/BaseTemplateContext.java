@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el;
+
+import java.util.Collection;
+
+/**
+ * Immutable template context built once from {@link TemplateVariableProvider}s, ex: for an API and a {@link TemplateVariableScope}.
+ * The template contexts created from it (see {@link TemplateEngine#templateEngine(BaseTemplateContext)}) look its variables up instead of having
+ * the providers fill them again, the variables they set override the ones of the base without modifying it.
+ * <p/>
+ * The values provided are shared by all these template contexts, they must not be modified.
+ *
+ * @author GraviteeSource Team
+ */
+public interface BaseTemplateContext extends TemplateVariableProvider {
+    /**
+     * Builds a base context from the variables given by the providers, see {@link TemplateEngineFactory#baseTemplateContext(Collection)}.
+     *
+     * @param providers the providers of the variables.
+     * @return the base context.
+     */
+    static BaseTemplateContext of(Collection<? extends TemplateVariableProvider> providers) {
+        return TemplateEngine.factory.baseTemplateContext(providers);
+    }
+
+    /**
+     * @param name the name of the variable.
+     * @return the value of the variable in the base context.
+     */
+    Object lookupVariable(String name);
+
+    /**
+     * Fills the given template context with the variables of the base, for the engines not able to lie on top of it.
+     *
+     * @param templateContext the template context to fill.
+     */
+    @Override
+    void provide(TemplateContext templateContext);
+}
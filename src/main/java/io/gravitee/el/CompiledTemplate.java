@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el;
+
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.reactivex.rxjava3.core.Maybe;
+
+/**
+ * A template parsed once for all, see {@link TemplateEngine#compile(String)}.
+ * <p/>
+ * A compiled template is immutable and thread-safe: it can be kept in a field (e.g. by a policy for its configured templates) and evaluated
+ * against any {@link TemplateContext}. Evaluating it doesn't require to look the template up in the expression cache again and it remains valid
+ * even if the template is evicted from the cache.
+ *
+ * @author GraviteeSource Team
+ */
+public interface CompiledTemplate {
+    /**
+     * @return the template as given for compilation.
+     */
+    String getExpression();
+
+    /**
+     * Evaluate the template against the given context in a reactive context.
+     * This method supports deferred variables.
+     *
+     * @param context the context containing the variables to use for the evaluation, typically {@link TemplateEngine#getTemplateContext()}.
+     * @param clazz the class of the expected result.
+     * @param <T> the expected result type.
+     *
+     * @return a {@link Maybe} with the result of the evaluation or empty in case the evaluation returns <code>null</code>.
+     */
+    <T> Maybe<T> eval(TemplateContext context, Class<T> clazz);
+
+    /**
+     * Evaluate the template against the given context.
+     * <b>Warn</b>: <code>evalNow</code> only supports deferred variables that are already resolved, see {@link TemplateEngine#evalNow(String, Class)}.
+     *
+     * @param context the context containing the variables to use for the evaluation, typically {@link TemplateEngine#getTemplateContext()}.
+     * @param clazz the class of the expected result.
+     * @param <T> the expected result type.
+     *
+     * @return the result of the evaluation.
+     */
+    <T> T evalNow(TemplateContext context, Class<T> clazz);
+
+    /**
+     * Evaluate the template as a condition against the given context, see {@link TemplateEngine#evalBoolean(String)}.
+     *
+     * @param context the context containing the variables to use for the evaluation.
+     *
+     * @return a {@link Maybe} with the result of the evaluation or empty in case the evaluation returns <code>null</code>.
+     */
+    default Maybe<Boolean> evalBoolean(TemplateContext context) {
+        return eval(context, Boolean.class);
+    }
+
+    /**
+     * Evaluate the template as a condition against the given context, see {@link TemplateEngine#evalBooleanNow(String)}.
+     *
+     * @param context the context containing the variables to use for the evaluation.
+     *
+     * @return the result of the evaluation, <code>false</code> if the evaluation returns <code>null</code>.
+     */
+    default boolean evalBooleanNow(TemplateContext context) {
+        return Boolean.TRUE.equals(evalNow(context, Boolean.class));
+    }
+
+    /**
+     * Evaluate the template as an integral number against the given context, see {@link TemplateEngine#evalLongNow(String)}.
+     *
+     * @param context the context containing the variables to use for the evaluation.
+     *
+     * @return the result of the evaluation.
+     * @throws ExpressionEvaluationException if the evaluation returns <code>null</code> or a value that cannot be converted.
+     */
+    default long evalLongNow(TemplateContext context) {
+        final Long value = evalNow(context, Long.class);
+        if (value == null) {
+            throw new ExpressionEvaluationException(getExpression(), new IllegalStateException("The expression returns null, a number is expected"));
+        }
+        return value;
+    }
+
+    /**
+     * Evaluate the template as a decimal number against the given context, see {@link TemplateEngine#evalDoubleNow(String)}.
+     *
+     * @param context the context containing the variables to use for the evaluation.
+     *
+     * @return the result of the evaluation.
+     * @throws ExpressionEvaluationException if the evaluation returns <code>null</code> or a value that cannot be converted.
+     */
+    default double evalDoubleNow(TemplateContext context) {
+        final Double value = evalNow(context, Double.class);
+        if (value == null) {
+            throw new ExpressionEvaluationException(getExpression(), new IllegalStateException("The expression returns null, a number is expected"));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+
+/**
+ * Cache of deferred values across template contexts, see {@link DeferredVariableOptions#getCache()}.
+ *
+ * @author GraviteeSource Team
+ */
+public interface DeferredValueStore {
+    /**
+     * Returns a {@link Maybe} emitting the value cached for the key, or fetching it with the given lookup when subscribed.
+     *
+     * @param key the key of the value, ex: <code>dictionary:my-dictionary</code>.
+     * @param lookup the lookup fetching the value.
+     * @param <T> the type of the value.
+     * @return the cached value.
+     */
+    <T> Maybe<T> maybe(String key, Maybe<T> lookup);
+
+    /**
+     * Same as {@link #maybe(String, Maybe)} with a {@link Single}.
+     */
+    default <T> Single<T> single(String key, Single<T> lookup) {
+        return maybe(key, lookup.toMaybe()).toSingle();
+    }
+
+    /**
+     * Removes the value cached for the key, the next lookup fetches it again.
+     *
+     * @param key the key of the value.
+     */
+    void invalidate(String key);
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Options of a deferred variable, see {@link TemplateContext#setDeferredVariable(String, io.reactivex.rxjava3.core.Maybe, DeferredVariableOptions)}.
+ *
+ * @author GraviteeSource Team
+ */
+@Getter
+@Builder
+public class DeferredVariableOptions {
+
+    /**
+     * Indicates if the deferred variable is resolved only once for the template context, see {@link #memoized}.
+     */
+    public static final boolean DEFAULT_MEMOIZED = true;
+
+    /**
+     * Cost of a deferred variable that doesn't give any hint, see {@link #cost}.
+     */
+    public static final int DEFAULT_COST = 0;
+
+    /**
+     * When <code>true</code>, the deferred variable is subscribed once for all the expressions evaluated against the template context, evaluations
+     * happening while it is being resolved share the same resolution. Its value is then reused, a failure is only shared by the evaluations waiting
+     * for it, the next ones subscribe again.
+     * When <code>false</code>, the deferred variable is subscribed again for each evaluation requiring it, for values meant to change over time.
+     */
+    @Builder.Default
+    private final boolean memoized = DEFAULT_MEMOIZED;
+
+    /**
+     * Relative cost of resolving the deferred variable, ex: <code>0</code> for a local value, <code>10</code> for a remote call. When an expression
+     * requires several deferred variables, the cheapest ones are subscribed first, see {@link TemplateContext#setDeferredVariablesMaxConcurrency(int)}.
+     */
+    @Builder.Default
+    private final int cost = DEFAULT_COST;
+
+    /**
+     * Key under which the value of the deferred variable is cached across template contexts, ex: <code>dictionary:my-dictionary</code>.
+     * When set, the value is only fetched when it is missing or expired from the {@link #cache}. Only available to {@link io.reactivex.rxjava3.core.Maybe}
+     * and {@link io.reactivex.rxjava3.core.Single} deferred variables.
+     */
+    private final String cacheKey;
+
+    /**
+     * Cache of the value when a {@link #cacheKey} is given, the shared one of the template engine if none is specified.
+     */
+    private final DeferredValueStore cache;
+
+    public static DeferredVariableOptions defaults() {
+        return DeferredVariableOptions.builder().build();
+    }
+}
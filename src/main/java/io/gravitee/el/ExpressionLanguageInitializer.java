@@ -15,6 +15,8 @@
  */
 package io.gravitee.el;
 
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.cache.DeferredValueCache;
 import io.gravitee.el.spel.context.SecuredMethodResolver;
 import io.gravitee.el.spel.context.SecuredResolver;
 import java.util.ArrayList;
@@ -35,5 +37,7 @@ public class ExpressionLanguageInitializer implements InitializingBean {
     @Override
     public void afterPropertiesSet() throws Exception {
         SecuredResolver.initialize(environment);
+        SpelExpressionParser.initialize(environment);
+        DeferredValueCache.initialize(environment);
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Report of the precompilation of a set of expressions, see {@link TemplateEngineFactory#precompile(java.util.Collection)}.
+ * It gives the outcome of each expression, allowing to validate all the expressions of an API before it gets deployed.
+ *
+ * @author GraviteeSource Team
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PrecompilationReport {
+
+    private final List<PrecompilationResult> results;
+
+    /**
+     * @return <code>true</code> if all the expressions have been compiled, <code>false</code> otherwise.
+     */
+    public boolean isValid() {
+        return results.stream().allMatch(PrecompilationResult::isCompiled);
+    }
+
+    /**
+     * @return the results of the expressions that could not be compiled.
+     */
+    public List<PrecompilationResult> getErrors() {
+        return results.stream().filter(result -> !result.isCompiled()).toList();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.lang.Nullable;
+
+/**
+ * Outcome of the precompilation of a single expression, see {@link TemplateEngineFactory#precompile(java.util.Collection)}.
+ *
+ * @author GraviteeSource Team
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PrecompilationResult {
+
+    /**
+     * The expression as given for precompilation.
+     */
+    private final String expression;
+
+    /**
+     * <code>true</code> if the expression has been parsed and analysed, and is now cached, <code>false</code> otherwise.
+     */
+    private final boolean compiled;
+
+    /**
+     * The reason why the expression could not be compiled, <code>null</code> if it has been compiled.
+     */
+    @Nullable
+    private final Throwable error;
+
+    public static PrecompilationResult compiled(String expression) {
+        return new PrecompilationResult(expression, true, null);
+    }
+
+    public static PrecompilationResult failed(String expression, Throwable error) {
+        return new PrecompilationResult(expression, false, error);
+    }
+}
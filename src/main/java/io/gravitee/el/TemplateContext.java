@@ -57,6 +57,49 @@ public interface TemplateContext {
      */
     void setDeferredVariable(String name, Single<?> deferred);
 
+    /**
+     * Same as {@link #setDeferredVariable(String, Completable)} with specific options, ex: to resolve it on each evaluation.
+     * By default, a deferred variable is resolved only once per template context, see {@link DeferredVariableOptions#isMemoized()}.
+     *
+     * @param name the name of the variable.
+     * @param deferred a {@link Completable} that will be called if and only if the variable <code>name</code> is accessed by the evaluated expression.
+     * @param options the options of the deferred variable.
+     */
+    default void setDeferredVariable(String name, Completable deferred, DeferredVariableOptions options) {
+        setDeferredVariable(name, deferred);
+    }
+
+    /**
+     * Same as {@link #setDeferredVariable(String, Maybe)} with specific options, see {@link #setDeferredVariable(String, Completable, DeferredVariableOptions)}.
+     *
+     * @param name the name of the variable.
+     * @param deferred a {@link Maybe} that will be called if and only if the variable <code>name</code> is accessed by the evaluated expression.
+     * @param options the options of the deferred variable.
+     */
+    default void setDeferredVariable(String name, Maybe<?> deferred, DeferredVariableOptions options) {
+        setDeferredVariable(name, deferred);
+    }
+
+    /**
+     * Same as {@link #setDeferredVariable(String, Single)} with specific options, see {@link #setDeferredVariable(String, Completable, DeferredVariableOptions)}.
+     *
+     * @param name the name of the variable.
+     * @param deferred a {@link Single} that will be called if and only if the variable <code>name</code> is accessed by the evaluated expression.
+     * @param options the options of the deferred variable.
+     */
+    default void setDeferredVariable(String name, Single<?> deferred, DeferredVariableOptions options) {
+        setDeferredVariable(name, deferred);
+    }
+
+    /**
+     * Limits the number of deferred variables resolved concurrently for a single evaluation, so that an expression requiring many of them doesn't
+     * trigger all their lookups at the same time. The other ones are subscribed as soon as a resolution completes, the cheapest first (see
+     * {@link DeferredVariableOptions#getCost()}). By default, the concurrency is not limited.
+     *
+     * @param maxConcurrency the maximum number of deferred variables resolved concurrently, must be positive.
+     */
+    default void setDeferredVariablesMaxConcurrency(int maxConcurrency) {}
+
     /**
      * Set a deferred function holder variable. A {@link DeferredFunctionHolder} is an object that is known to expose one or more reactive methods.
      * Such an object is simply an holder allowing access to a set of function returning a {@link Maybe} or a {@link Single} that needs to be resolved when evaluating the EL.
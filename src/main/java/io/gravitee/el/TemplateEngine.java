@@ -20,6 +20,7 @@ import io.gravitee.el.exceptions.ExpressionEvaluationException;
 import io.reactivex.rxjava3.core.Maybe;
 import io.vertx.core.Context;
 import io.vertx.core.Vertx;
+import java.util.Collection;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -37,6 +38,28 @@ public interface TemplateEngine {
         return factory.templateEngine();
     }
 
+    /**
+     * Gets a {@link TemplateEngine} instance whose context comes from a pool local to the current thread, ex: a Vert.x event loop, instead of
+     * allocating a new one. Only a small handle is allocated for each call.
+     * The engine must be given back with {@link #release()} once its evaluations are completed, it can't be used anymore afterwards.
+     *
+     * @return a {@link TemplateEngine} instance for single use, with an empty context.
+     */
+    static TemplateEngine pooledTemplateEngine() {
+        return factory.pooledTemplateEngine();
+    }
+
+    /**
+     * Creates a {@link TemplateEngine} instance whose context lies on top of a base context built once, typically per API, instead of having the
+     * {@link TemplateVariableProvider}s fill the context of each engine.
+     *
+     * @param base the base context providing the shared variables.
+     * @return a {@link TemplateEngine} instance for single use.
+     */
+    static TemplateEngine templateEngine(BaseTemplateContext base) {
+        return factory.templateEngine(base);
+    }
+
     /**
      * Creates a {@link TemplateEngine} instance from an existing one. The goal is to share the same variables.
      *
@@ -47,6 +70,16 @@ public interface TemplateEngine {
         return factory.fromTemplateEngine(templateEngine);
     }
 
+    /**
+     * Precompiles the given expressions, see {@link TemplateEngineFactory#precompile(Collection)}.
+     *
+     * @param expressions the expressions to precompile.
+     * @return the report giving the outcome of each expression.
+     */
+    static PrecompilationReport precompile(Collection<String> expressions) {
+        return factory.precompile(expressions);
+    }
+
     /**
      * @deprecated this method is deprecated in favor of {@link #eval(String, Class)} that supports reactive.
      * Evaluate the el expression against the current template context.
@@ -77,7 +110,9 @@ public interface TemplateEngine {
 
     /**
      * Evaluate the el expression against the current template context.
-     * <b>Warn</b>: <code>evalNow</code> does not support deferred variables and doesn't benefit from cache expression mechanism. Use {@link #eval(String, Class)} for reactive version that supports deferred variables.
+     * This method benefits from the cache of parsed expression.
+     * <b>Warn</b>: <code>evalNow</code> only supports deferred variables and functions that are already resolved (i.e. completing as soon as subscribed), an
+     * {@link ExpressionEvaluationException} is thrown otherwise. Use {@link #eval(String, Class)} for reactive version that supports deferred variables.
      *
      * @param expression the el expression to evaluate.
      * @param clazz the class of the expected result .
@@ -121,10 +156,112 @@ public interface TemplateEngine {
         return eval(expression, clazz).blockingGet();
     }
 
+    /**
+     * Evaluate the el expression as a condition against the current template context in a reactive context.
+     * As for {@link #eval(String, Class)}, the expression is evaluated on subscription.
+     *
+     * @param expression the el expression to evaluate.
+     *
+     * @return a {@link Maybe} with the result of the evaluation or empty in case the evaluation returns <code>null</code>.
+     */
+    default Maybe<Boolean> evalBoolean(String expression) {
+        return eval(expression, Boolean.class);
+    }
+
+    /**
+     * Evaluate the el expression as a condition against the current template context, returning a primitive.
+     * Same restrictions as {@link #evalNow(String, Class)} regarding the deferred variables and functions.
+     *
+     * @param expression the el expression to evaluate.
+     *
+     * @return the result of the evaluation, <code>false</code> if the evaluation returns <code>null</code>.
+     */
+    default boolean evalBooleanNow(String expression) {
+        return Boolean.TRUE.equals(evalNow(expression, Boolean.class));
+    }
+
+    /**
+     * Evaluate the el expression as an integral number against the current template context, returning a primitive.
+     * The evaluation itself may still box the value, only the caller is spared the unboxing and the <code>null</code> check.
+     * Same restrictions as {@link #evalNow(String, Class)} regarding the deferred variables and functions.
+     *
+     * @param expression the el expression to evaluate.
+     *
+     * @return the result of the evaluation.
+     * @throws ExpressionEvaluationException if the evaluation returns <code>null</code> or a value that cannot be converted.
+     */
+    default long evalLongNow(String expression) {
+        return requireNonNull(evalNow(expression, Long.class), expression);
+    }
+
+    /**
+     * Evaluate the el expression as a decimal number against the current template context, returning a primitive.
+     * Same restrictions as {@link #evalNow(String, Class)} regarding the deferred variables and functions.
+     *
+     * @param expression the el expression to evaluate.
+     *
+     * @return the result of the evaluation.
+     * @throws ExpressionEvaluationException if the evaluation returns <code>null</code> or a value that cannot be converted.
+     */
+    default double evalDoubleNow(String expression) {
+        return requireNonNull(evalNow(expression, Double.class), expression);
+    }
+
+    /**
+     * Parses the el expression once for all and returns a handle allowing to evaluate it repeatedly, see {@link CompiledTemplate}.
+     * The deferred function holders of the current template context are taken into account to analyse the expression.
+     * By default, the handle evaluates the expression with this engine each time, only against its own template context.
+     *
+     * @param expression the el expression to compile.
+     *
+     * @return the compiled template.
+     * @throws ExpressionEvaluationException if the expression cannot be parsed.
+     */
+    default CompiledTemplate compile(String expression) throws ExpressionEvaluationException {
+        return new CompiledTemplate() {
+            @Override
+            public String getExpression() {
+                return expression;
+            }
+
+            @Override
+            public <T> Maybe<T> eval(TemplateContext context, Class<T> clazz) {
+                return templateEngine(context).eval(expression, clazz);
+            }
+
+            @Override
+            public <T> T evalNow(TemplateContext context, Class<T> clazz) {
+                return templateEngine(context).evalNow(expression, clazz);
+            }
+
+            private TemplateEngine templateEngine(TemplateContext context) {
+                if (context != getTemplateContext()) {
+                    throw new IllegalArgumentException("The template can only be evaluated against the context of the engine that compiled it.");
+                }
+                return TemplateEngine.this;
+            }
+        };
+    }
+
     /**
      * The context containing all the variables that can be used to evaluate the expressions.
      *
      * @return the current template context.
      */
     TemplateContext getTemplateContext();
+
+    /**
+     * Gives the engine back to its pool when it comes from {@link #pooledTemplateEngine()}, its context is cleared. Nothing is done otherwise.
+     * The evaluations made with the engine must be completed before releasing it.
+     *
+     * @throws IllegalStateException if the engine has already been released.
+     */
+    default void release() {}
+
+    private static <T> T requireNonNull(T value, String expression) {
+        if (value == null) {
+            throw new ExpressionEvaluationException(expression, new IllegalStateException("The expression returns null, a number is expected"));
+        }
+        return value;
+    }
 }
@@ -15,6 +15,9 @@
  */
 package io.gravitee.el;
 
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import java.util.Collection;
+
 /**
  * @author Christophe LANNOY (chrislannoy.java at gmail.com)
  */
@@ -22,4 +25,80 @@ public interface TemplateEngineFactory {
     TemplateEngine templateEngine();
 
     TemplateEngine fromTemplateEngine(TemplateEngine templateEngine);
+
+    /**
+     * Creates a {@link TemplateEngine} whose context lies on top of the given base context, see {@link BaseTemplateContext}.
+     * By default, the base fills the context of a new engine.
+     *
+     * @param base the base context.
+     * @return a {@link TemplateEngine} instance for single use.
+     */
+    default TemplateEngine templateEngine(BaseTemplateContext base) {
+        final TemplateEngine templateEngine = templateEngine();
+        base.provide(templateEngine.getTemplateContext());
+        return templateEngine;
+    }
+
+    /**
+     * Builds a base context from the variables given by the providers, see {@link BaseTemplateContext#of(Collection)}.
+     * By default, the providers are applied once to look the variables up, and again to each context created from the base.
+     *
+     * @param providers the providers of the variables.
+     * @return the base context.
+     */
+    default BaseTemplateContext baseTemplateContext(Collection<? extends TemplateVariableProvider> providers) {
+        final TemplateContext templateContext = templateEngine().getTemplateContext();
+        providers.forEach(provider -> provider.provide(templateContext));
+
+        return new BaseTemplateContext() {
+            @Override
+            public Object lookupVariable(String name) {
+                return templateContext.lookupVariable(name);
+            }
+
+            @Override
+            public void provide(TemplateContext other) {
+                providers.forEach(provider -> provider.provide(other));
+            }
+        };
+    }
+
+    /**
+     * Gets a {@link TemplateEngine} from a pool, see {@link TemplateEngine#pooledTemplateEngine()}. Factories not pooling their engines create a new
+     * one, releasing it does nothing.
+     *
+     * @return a {@link TemplateEngine} instance for single use, to release once used.
+     */
+    default TemplateEngine pooledTemplateEngine() {
+        return templateEngine();
+    }
+
+    /**
+     * Parses and analyses the given expressions ahead of their first evaluation, typically when an API gets deployed.
+     * Compiled expressions are kept in the expression cache so that the first evaluations don't pay for the parsing.
+     * By default, each expression is compiled by a new {@link TemplateEngine}, which validates it without necessarily caching it.
+     *
+     * @param expressions the expressions to precompile.
+     * @return the report giving the outcome of each expression.
+     */
+    default PrecompilationReport precompile(Collection<String> expressions) {
+        final TemplateEngine templateEngine = templateEngine();
+
+        return new PrecompilationReport(
+            expressions
+                .stream()
+                .distinct()
+                .map(expression -> {
+                    try {
+                        templateEngine.compile(expression);
+                        return PrecompilationResult.compiled(expression);
+                    } catch (ExpressionEvaluationException e) {
+                        return PrecompilationResult.failed(expression, e);
+                    } catch (Exception e) {
+                        return PrecompilationResult.failed(expression, new ExpressionEvaluationException(expression, e));
+                    }
+                })
+                .toList()
+        );
+    }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the methods of a {@link io.gravitee.el.spel.context.DeferredFunctionHolder} that are safe to memoize: calls made with the same arguments
+ * against the same template context are resolved once and share their result. Annotating the holder class marks all its methods, the ones of its
+ * subclasses included.
+ *
+ * @author GraviteeSource Team
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.TYPE })
+public @interface Memoizable {
+    /**
+     * @return <code>true</code> if the calls made concurrently by different template contexts (ex: different requests) can share the same lookup,
+     * the result must then only depend on the holder type and the arguments.
+     */
+    boolean shared() default false;
+}
@@ -17,15 +17,18 @@ package io.gravitee.el.spel;
 
 import static java.util.Collections.emptyMap;
 
-import java.nio.charset.StandardCharsets;
+import io.gravitee.el.spel.context.StagedEvaluationContext;
+import io.gravitee.el.spel.context.VariableSlots;
+import io.reactivex.rxjava3.core.Maybe;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import org.springframework.expression.Expression;
 import org.springframework.expression.common.CompositeStringExpression;
+import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.SpelNode;
 import org.springframework.expression.spel.ast.*;
 import org.springframework.expression.spel.standard.SpelExpression;
-import org.springframework.util.DigestUtils;
 
 /**
  * Allows to cache a given {@link Expression} for later reuse.
@@ -36,66 +39,253 @@ import org.springframework.util.DigestUtils;
  */
 public class CachedExpression {
 
+    // Prefix of the variables holding the results of the deferred calls, ex: '%0'.
+    static final String DEFERRED_CALL_PREFIX = "%";
+
     private final Expression expression;
     private final SpelExpressionParser parser;
     private final Set<String> knownDeferredFunctionHolders;
+    private final Set<String> usedDeferredFunctionHolders;
+
+    private final Maybe<String> literal;
 
     private Set<String> variables;
-    private LinkedHashMap<String, String> expressionsToDefer;
-    private Expression rebuiltExpressionForDefer;
+    // Names of the variables referenced by the parsed expression, ex: 'request' for '#request.headers'.
+    private final Set<String> variableNames;
+    private final Set<String> variablePaths;
+    private Set<String> unconditionalVariablePaths;
+    // Variable paths accessed by conditional branches, without the deferred calls, ex: 'request.content' for '{#a || #request.content == 'b'}'.
+    private Set<String> conditionalVariablePaths;
+    // Deferred variables whose conditional accesses are guarded, see ConditionalVariablesGuard.
+    private final Set<String> guardedDeferredVariables;
+    private LinkedHashMap<String, CachedExpression> expressionsToDefer;
+    // The expression with its deferred calls replaced and its variables bound to their slot, null if the parsed one is used as is.
+    private Expression rebuiltExpression;
+
+    // Analyses of the expression for the deferred function holders and variables it references, see analysedFor().
+    private volatile Map<Analysis, CachedExpression> analyses;
 
     public CachedExpression(final Expression expression, SpelExpressionParser parser, Set<String> knownDeferredFunctionHolders) {
+        this(expression, parser, knownDeferredFunctionHolders, Collections.emptySet());
+    }
+
+    /**
+     * @param expression the parsed expression.
+     * @param parser the parser of the expression.
+     * @param knownDeferredFunctionHolders the names of the deferred function holders available in the context.
+     * @param knownDeferredVariables the names of the deferred variables available in the context, the conditional branches accessing one of them are
+     * guarded so that it is only resolved when a branch needs it.
+     */
+    public CachedExpression(
+        final Expression expression,
+        SpelExpressionParser parser,
+        Set<String> knownDeferredFunctionHolders,
+        Set<String> knownDeferredVariables
+    ) {
         this.expression = expression;
         this.parser = parser;
         this.knownDeferredFunctionHolders = knownDeferredFunctionHolders;
 
+        // Template without any expression, ex: "{ \"status\": \"UP\" }", its value is known once for all.
+        this.literal = expression instanceof LiteralExpression literalExpression ? Maybe.just(literalExpression.getExpressionString()) : null;
+
         computeVariables(expression);
+        this.variableNames = rootNames(variables);
+        this.usedDeferredFunctionHolders = referencedDeferredFunctionHolders(knownDeferredFunctionHolders);
+        computeFinalExpression(expression);
+        this.variablePaths = withParentPaths(variables);
+        bindVariableSlots();
+        computeUnconditionalVariablePaths(knownDeferredVariables);
+        this.guardedDeferredVariables = referencedDeferredVariables(knownDeferredVariables);
     }
 
-    public Map<String, String> expressionsToDefer() {
-        if (rebuiltExpressionForDefer == null) {
-            return emptyMap();
+    /**
+     * Indicates if this expression has been analysed for the same deferred function holders as the ones given, without any deferred variable.
+     * Only the holders that the expression refers to are considered, ex: <code>{#request.id}</code> can be reused whatever the holders are.
+     *
+     * @param knownDeferredFunctionHolders the names of the deferred function holders available in the context.
+     * @return <code>true</code> if the expression can be evaluated against a context exposing these deferred function holders.
+     */
+    public boolean isAnalysedFor(Set<String> knownDeferredFunctionHolders) {
+        return isAnalysedFor(knownDeferredFunctionHolders, Collections.emptySet());
+    }
+
+    /**
+     * Indicates if this expression has been analysed for the same deferred function holders and variables as the ones given.
+     * Only the deferred variables accessed by a conditional branch are considered, ex: <code>{#a || #request.content == 'b'}</code> is analysed
+     * again for a context deferring <code>request.content</code> but not for one deferring <code>response.content</code>.
+     *
+     * @param knownDeferredFunctionHolders the names of the deferred function holders available in the context.
+     * @param knownDeferredVariables the names of the deferred variables available in the context.
+     * @return <code>true</code> if the expression can be evaluated against a context exposing these deferred function holders and variables.
+     */
+    public boolean isAnalysedFor(Set<String> knownDeferredFunctionHolders, Set<String> knownDeferredVariables) {
+        return (
+            usedDeferredFunctionHolders.equals(referencedDeferredFunctionHolders(knownDeferredFunctionHolders)) &&
+            guardedDeferredVariables.equals(referencedDeferredVariables(knownDeferredVariables))
+        );
+    }
+
+    /**
+     * Returns the analysis of this expression for the deferred function holders and variables it references among the given ones. Each
+     * combination is analysed once, the analyses are kept along with this expression.
+     *
+     * @param knownDeferredFunctionHolders the names of the deferred function holders available in the context.
+     * @param knownDeferredVariables the names of the deferred variables available in the context.
+     * @param analyser parses and analyses the expression again for the referenced holders and deferred variables, the analysis rewrites the
+     * parsed tree.
+     * @return this expression if it doesn't reference any other holder or deferred variable than the ones it has been analysed for.
+     */
+    CachedExpression analysedFor(
+        Set<String> knownDeferredFunctionHolders,
+        Set<String> knownDeferredVariables,
+        BiFunction<Set<String>, Set<String>, CachedExpression> analyser
+    ) {
+        final Set<String> referencedHolders = referencedDeferredFunctionHolders(knownDeferredFunctionHolders);
+        final Set<String> referencedVariables = referencedDeferredVariables(knownDeferredVariables);
+
+        if (referencedHolders.equals(usedDeferredFunctionHolders) && referencedVariables.equals(guardedDeferredVariables)) {
+            return this;
         }
-        return expressionsToDefer;
+
+        Map<Analysis, CachedExpression> known = analyses;
+
+        if (known == null) {
+            synchronized (this) {
+                if (analyses == null) {
+                    analyses = new ConcurrentHashMap<>();
+                }
+                known = analyses;
+            }
+        }
+
+        return known.computeIfAbsent(
+            new Analysis(referencedHolders, referencedVariables),
+            analysis -> analyser.apply(analysis.deferredFunctionHolders(), analysis.deferredVariables())
+        );
     }
 
-    private void computeVariables(Expression expression) {
-        final List<String> deferExpressionsCollector = new ArrayList<>();
+    /**
+     * @return the deferred variables among the given ones that a conditional branch of the expression may access.
+     */
+    private Set<String> referencedDeferredVariables(Set<String> knownDeferredVariables) {
+        if (knownDeferredVariables == null || knownDeferredVariables.isEmpty() || conditionalVariablePaths.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> referenced = null;
+
+        for (String deferredVariable : knownDeferredVariables) {
+            for (String path : conditionalVariablePaths) {
+                if (StagedEvaluationContext.dependsOn(path, deferredVariable)) {
+                    if (referenced == null) {
+                        referenced = new HashSet<>();
+                    }
+                    referenced.add(deferredVariable);
+                    break;
+                }
+            }
+        }
+
+        return referenced == null ? Collections.emptySet() : referenced;
+    }
+
+    /**
+     * @return the deferred function holders among the given ones that the expression references, ex: <code>deferHolder</code> for
+     * <code>{#deferHolder.get('val')}</code>. The names are the ones of the variables of the parsed expression.
+     */
+    private Set<String> referencedDeferredFunctionHolders(Set<String> knownDeferredFunctionHolders) {
+        if (knownDeferredFunctionHolders == null || knownDeferredFunctionHolders.isEmpty() || variableNames.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> referenced = null;
+
+        for (String name : variableNames) {
+            if (knownDeferredFunctionHolders.contains(name)) {
+                if (referenced == null) {
+                    referenced = new HashSet<>();
+                }
+                referenced.add(name);
+            }
+        }
+
+        return referenced == null ? Collections.emptySet() : referenced;
+    }
+
+    private static Set<String> rootNames(Set<String> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> names = new HashSet<>();
+
+        for (String variable : variables) {
+            names.add(rootName(variable));
+        }
 
-        computeVariables(expression, deferExpressionsCollector);
-        computeFinalExpression(expression, deferExpressionsCollector);
+        return names;
     }
 
-    private void computeVariables(Expression expression, List<String> deferExpressionsCollector) {
+    private static String rootName(String path) {
+        final int dot = path.indexOf('.');
+        return dot < 0 ? path : path.substring(0, dot);
+    }
+
+    /**
+     * The deferred function holders and variables an analysis of the expression has been made for.
+     */
+    private record Analysis(Set<String> deferredFunctionHolders, Set<String> deferredVariables) {}
+
+    /**
+     * @return <code>true</code> if the expression is a plain text that doesn't contain any expression to evaluate.
+     */
+    public boolean isLiteral() {
+        return literal != null;
+    }
+
+    /**
+     * @return the already completed value of a literal expression, <code>null</code> if the expression is not a literal, see {@link #isLiteral()}.
+     */
+    public Maybe<String> getLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return the sub-expressions calling a deferred function holder, by the name of the variable they are referenced by in {@link #getExpression()},
+     * in the order they must be resolved.
+     */
+    public Map<String, CachedExpression> expressionsToDefer() {
+        if (expressionsToDefer == null) {
+            return emptyMap();
+        }
+        return expressionsToDefer;
+    }
+
+    private void computeVariables(Expression expression) {
         if (expression instanceof SpelExpression spelExpression) {
             // Ex: "{#request.headers['X-Gravitee-Endpoint']}"
-            computeVariables(spelExpression.getAST(), deferExpressionsCollector);
+            computeVariables(spelExpression.getAST());
         } else if (expression instanceof CompositeStringExpression compositeStringExpression) {
             // Ex: "Header X-Gravitee-Endpoint: {#request.headers['X-Gravitee-Endpoint'][0]}"
-            computeVariables(compositeStringExpression, deferExpressionsCollector);
+            computeVariables(compositeStringExpression);
         }
         // Could be a LiteralExpression we don't really care, ex: "Hello Gravitee".
     }
 
-    private void computeVariables(CompositeStringExpression expression, List<String> deferExpressionsCollector) {
+    private void computeVariables(CompositeStringExpression expression) {
         // Ex: "Header X-Gravitee-Endpoint: {#request.headers['X-Gravitee-Endpoint'][0]}"
         for (Expression e : expression.getExpressions()) {
-            computeVariables(e, deferExpressionsCollector);
+            computeVariables(e);
         }
     }
 
-    private void computeVariables(CompoundExpression expression, List<String> deferExpressionsCollector) {
+    private void computeVariables(CompoundExpression expression) {
         // Ex: "{#value.content.val1.get('val')[0]}"
-        final List<SpelNodeImpl> deferExpressionNodes = new ArrayList<>();
-
         for (int i = 0; i < expression.getChildCount(); i++) {
             final SpelNode node = expression.getChild(i);
             if (node instanceof VariableReference variableReference) {
                 // Ex: "{#value.content.val1}"
-
-                // nodes: [value]
-                deferExpressionNodes.add(variableReference);
-
                 i++;
                 StringBuilder variableName = new StringBuilder(getVariableName(variableReference));
 
@@ -104,50 +294,30 @@ public class CachedExpression {
                 ) {
                     // Iterate over all children, ex: value -> content -> val1
                     variableName.append(".").append(propertyOrFieldReference.getName());
-
-                    // nodes: [value, content, val1]
-                    deferExpressionNodes.add(propertyOrFieldReference);
                     i++;
                 }
 
                 i--;
 
                 addVariable(variableName.toString());
-            } else if (node instanceof MethodReference || node instanceof Indexer) {
-                // nodes: [value, content, val1, get('val')]
-                deferExpressionNodes.add((SpelNodeImpl) node);
-
-                // Compute the method, ex: {#value.content.val1.get('val')}.
-                computeVariables(node, deferExpressionsCollector);
-
-                if (deferExpressionNodes.size() > 1) {
-                    // Rebuild defer expression from nodes and add it to the collector, ex: #value.content.val1.get('val').
-                    addDeferExpression(deferExpressionNodes, deferExpressionsCollector);
-                }
             } else {
-                // Literal, FunctionReference, TypeReference, ex: {#value.content.val1.get()[0]}
-                if (deferExpressionNodes.size() > 1) {
-                    // Rebuild defer expression from nodes and add it to the collector, ex: #value.content.val1.get('val').
-                    addDeferExpression(deferExpressionNodes, deferExpressionsCollector);
-                }
-
-                // Could be a method, ex: {#value.content()}.
-                computeVariables(node, deferExpressionsCollector);
+                // Could be a method, ex: {#value.content()}, or an indexer, ex: {#value.content[#index]}.
+                computeVariables(node);
             }
         }
     }
 
-    private void computeVariables(SpelNode spelNode, List<String> deferExpressionsCollector) {
+    private void computeVariables(SpelNode spelNode) {
         if (spelNode instanceof CompoundExpression compoundExpression) {
             // Ex: "{#value.content.val1}"
-            computeVariables(compoundExpression, deferExpressionsCollector);
+            computeVariables(compoundExpression);
         } else if (spelNode instanceof VariableReference variableReference && spelNode.getChildCount() == 0) {
             // Ex: "{#value}
             addVariable(getVariableName(variableReference));
         } else {
             // Iterate and process all child nodes.
             for (int i = 0; i < spelNode.getChildCount(); i++) {
-                computeVariables(spelNode.getChild(i), deferExpressionsCollector);
+                computeVariables(spelNode.getChild(i));
             }
         }
     }
@@ -164,8 +334,8 @@ public class CachedExpression {
     }
 
     public Expression getExpression() {
-        if (rebuiltExpressionForDefer != null) {
-            return rebuiltExpressionForDefer;
+        if (rebuiltExpression != null) {
+            return rebuiltExpression;
         }
         return expression;
     }
@@ -177,83 +347,386 @@ public class CachedExpression {
         return variables;
     }
 
-    private void computeFinalExpression(Expression expression, List<String> deferExpressionsCollector) {
-        if (makesUseOfDeferFunctions() && (expression instanceof CompositeStringExpression || !deferExpressionsCollector.isEmpty())) {
-            expressionsToDefer = new LinkedHashMap<>();
+    /**
+     * @return the variables of the expression and all their parent paths, ex: <code>request.content</code> gives <code>request</code> and
+     * <code>request.content</code>. A deferred variable is required to evaluate the expression if its name is one of them.
+     */
+    public Set<String> getVariablePaths() {
+        return variablePaths;
+    }
+
+    /**
+     * @return the variable paths, see {@link #getVariablePaths()}, accessed whatever the outcome of the conditions of the expression. The other ones
+     * are only accessed by conditional branches, ex: <code>#request.content</code> in <code>{#a || #request.content == 'b'}</code>, their deferred
+     * variables can be resolved only when a branch actually accesses them.
+     */
+    public Set<String> getUnconditionalVariablePaths() {
+        return unconditionalVariablePaths;
+    }
+
+    private static Set<String> withParentPaths(Set<String> variables) {
+        if (variables == null || variables.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final Set<String> paths = new HashSet<>(variables);
+
+        for (String variable : variables) {
+            for (int dot = variable.indexOf('.'); dot > 0; dot = variable.indexOf('.', dot + 1)) {
+                paths.add(variable.substring(0, dot));
+            }
+        }
+
+        return paths;
+    }
+
+    /**
+     * Replaces the variable references by references bound to the slot of their name, see {@link VariableSlots}: evaluating them doesn't look the
+     * name up anymore. The variable references are rewritten in place, only an expression made of a single variable, ex: <code>{#request}</code>,
+     * has to be rebuilt.
+     */
+    private void bindVariableSlots() {
+        final Expression finalExpression = getExpression();
 
-            String lastDeferVariable = null;
+        if (finalExpression instanceof SpelExpression spelExpression) {
+            final SpelExpression bound = bindVariableSlots(spelExpression);
 
-            for (String exp : deferExpressionsCollector) {
-                for (Map.Entry<String, String> e : expressionsToDefer.entrySet()) {
-                    exp = exp.replaceAll(Pattern.quote(e.getValue()), "#" + e.getKey());
+            if (bound != spelExpression) {
+                this.rebuiltExpression = bound;
+            }
+        } else if (finalExpression instanceof CompositeStringExpression compositeStringExpression) {
+            final Expression[] expressions = compositeStringExpression.getExpressions().clone();
+            boolean rebuilt = false;
+
+            for (int i = 0; i < expressions.length; i++) {
+                if (expressions[i] instanceof SpelExpression spelExpression) {
+                    expressions[i] = bindVariableSlots(spelExpression);
+                    rebuilt |= expressions[i] != spelExpression;
                 }
+            }
 
-                lastDeferVariable = "_" + DigestUtils.md5DigestAsHex(exp.getBytes(StandardCharsets.UTF_8));
-                expressionsToDefer.put(lastDeferVariable, exp);
+            if (rebuilt) {
+                this.rebuiltExpression = new CompositeStringExpression(compositeStringExpression.getExpressionString(), expressions);
             }
+        }
+    }
 
-            final StringBuilder finalExpressionBuilder = new StringBuilder();
+    private SpelExpression bindVariableSlots(SpelExpression spelExpression) {
+        final SpelNodeImpl ast = (SpelNodeImpl) spelExpression.getAST();
+        final SpelNodeImpl bound = bindVariableSlots(ast);
 
-            if (expression instanceof CompositeStringExpression compositeStringExpression) {
-                for (Expression e : compositeStringExpression.getExpressions()) {
-                    if (e instanceof SpelExpression spelExpression) {
-                        finalExpressionBuilder.append("{").append(spelExpression.toStringAST()).append("}");
-                    } else {
-                        finalExpressionBuilder.append(e.getExpressionString());
-                    }
+        if (bound == ast) {
+            return spelExpression;
+        }
+
+        return new SpelExpression(spelExpression.getExpressionString(), bound, parser.getConfiguration());
+    }
+
+    private SpelNodeImpl bindVariableSlots(SpelNodeImpl node) {
+        if (node.getClass() == VariableReference.class) {
+            final String name = getVariableName((VariableReference) node);
+
+            // #this and #root are not variables of the context.
+            final int slot = "this".equals(name) || "root".equals(name) ? VariableSlots.NO_SLOT : VariableSlots.slotOf(name);
+
+            return slot == VariableSlots.NO_SLOT ? node : new SlotVariableReference((VariableReference) node, name, slot);
+        }
+
+        final SpelNodeImpl[] children = SpelNodes.children(node);
+
+        for (int i = 0; i < children.length; i++) {
+            final SpelNodeImpl child = bindVariableSlots(children[i]);
+            if (child != children[i]) {
+                SpelNodes.replaceChild(node, i, child);
+            }
+        }
+
+        return node;
+    }
+
+    private void computeUnconditionalVariablePaths(Set<String> knownDeferredVariables) {
+        final ConditionalVariablesGuard guard = new ConditionalVariablesGuard(knownDeferredVariables);
+        final Expression finalExpression = getExpression();
+
+        if (finalExpression instanceof SpelExpression spelExpression) {
+            guard.guard((SpelNodeImpl) spelExpression.getAST(), false);
+        } else if (finalExpression instanceof CompositeStringExpression compositeStringExpression) {
+            for (Expression e : compositeStringExpression.getExpressions()) {
+                if (e instanceof SpelExpression spelExpression) {
+                    guard.guard((SpelNodeImpl) spelExpression.getAST(), false);
                 }
-            } else if (expression instanceof SpelExpression spelExpression) {
-                if (!(spelExpression.getAST().getChild(0) instanceof Literal)) {
-                    // Last variable is unnecessary when the original expression isn't a Literal.
-                    expressionsToDefer.remove(lastDeferVariable);
+            }
+        }
+
+        this.unconditionalVariablePaths = guard.hasConditionalVariables ? withParentPaths(guard.unconditional) : variablePaths;
+        this.conditionalVariablePaths = guard.conditional.isEmpty() ? Collections.emptySet() : guard.conditional;
+    }
+
+    private void computeFinalExpression(Expression expression) {
+        if (!makesUseOfDeferFunctions()) {
+            return;
+        }
+
+        // The deferred calls are replaced directly in the parsed tree, there is no need to print and parse the expression again.
+        final DeferredCallsRewriter rewriter = new DeferredCallsRewriter();
+
+        if (expression instanceof SpelExpression spelExpression) {
+            final SpelNodeImpl ast = (SpelNodeImpl) spelExpression.getAST();
+
+            // The root is never replaced as a deferred call returned as is is resolved by the evaluation itself.
+            rewriter.rewrite(ast, true);
+
+            if (rewriter.hasDeferred()) {
+                this.rebuiltExpression = new SpelExpression(ast.toStringAST(), ast, parser.getConfiguration());
+            }
+        } else if (expression instanceof CompositeStringExpression compositeStringExpression) {
+            final Expression[] expressions = compositeStringExpression.getExpressions();
+            final Expression[] rebuiltExpressions = new Expression[expressions.length];
+            final StringBuilder rebuiltExpressionString = new StringBuilder();
+
+            for (int i = 0; i < expressions.length; i++) {
+                if (expressions[i] instanceof SpelExpression spelExpression) {
+                    // Ex: "Hello {#deferHolder.get('val')}" -> "Hello {##%0}"
+                    final SpelNodeImpl ast = rewriter.rewrite((SpelNodeImpl) spelExpression.getAST(), false);
+                    final String astString = ast.toStringAST();
+
+                    rebuiltExpressions[i] = new SpelExpression(astString, ast, parser.getConfiguration());
+                    rebuiltExpressionString
+                        .append(SpelExpressionParser.EXPRESSION_PREFIX)
+                        .append(astString)
+                        .append(SpelExpressionParser.EXPRESSION_SUFFIX);
+                } else {
+                    rebuiltExpressions[i] = expressions[i];
+                    rebuiltExpressionString.append(expressions[i].getExpressionString());
                 }
-                finalExpressionBuilder.append(spelExpression.toStringAST());
             }
 
-            String finalExpression = finalExpressionBuilder.toString();
+            if (rewriter.hasDeferred()) {
+                this.rebuiltExpression = new CompositeStringExpression(rebuiltExpressionString.toString(), rebuiltExpressions);
+            }
+        }
+
+        if (rebuiltExpression != null) {
+            this.expressionsToDefer = rewriter.deferred;
+            this.variables.addAll(rewriter.deferred.keySet());
+        }
+    }
+
+    private boolean makesUseOfDeferFunctions() {
+        return !usedDeferredFunctionHolders.isEmpty();
+    }
+
+    /**
+     * Wraps the variables accessed in conditional branches with a {@link DeferredVariableGuard} and collects the paths of the other ones.
+     * The conditional branches are the right operand of <code>||</code> and <code>&&</code>, the branches of a ternary and the default value of the
+     * elvis operator: SpEL only evaluates them depending on the first operand.
+     * Only the variables that may require a known deferred variable or a deferred call are guarded, the others are left as is so that the
+     * expression still compiles as SpEL parsed it, ex: <code>{#a == 1 && #b == 2}</code>.
+     */
+    private class ConditionalVariablesGuard {
+
+        private final Set<String> knownDeferredVariables;
+        private final Set<String> unconditional = new HashSet<>();
+        private final Set<String> conditional = new HashSet<>();
+        private boolean hasConditionalVariables;
+
+        ConditionalVariablesGuard(Set<String> knownDeferredVariables) {
+            this.knownDeferredVariables = knownDeferredVariables == null ? Collections.emptySet() : knownDeferredVariables;
+        }
+
+        SpelNodeImpl guard(SpelNodeImpl node, boolean conditional) {
+            if (node instanceof VariableReference variableReference) {
+                // Ex: "{#a || #value}"
+                return guard(variableReference, getVariableName(variableReference), conditional);
+            }
 
-            for (Map.Entry<String, String> e : expressionsToDefer.entrySet()) {
-                finalExpression = finalExpression.replaceAll(Pattern.quote(e.getValue()), "#" + e.getKey());
+            final SpelNodeImpl[] children = SpelNodes.children(node);
+            int first = 0;
 
-                if (!finalExpression.equals(expression.getExpressionString())) {
-                    this.variables.add(e.getKey());
+            if (node instanceof CompoundExpression && children[0] instanceof VariableReference variableReference) {
+                // Ex: "{#a || #value.content.val1.get('val')}", the path is 'value.content.val1'.
+                final StringBuilder path = new StringBuilder(getVariableName(variableReference));
+
+                for (int i = 1; i < children.length && children[i] instanceof PropertyOrFieldReference propertyOrFieldReference; i++) {
+                    path.append(".").append(propertyOrFieldReference.getName());
+                }
+
+                final SpelNodeImpl guarded = guard(variableReference, path.toString(), conditional);
+                if (guarded != variableReference) {
+                    SpelNodes.replaceChild(node, 0, guarded);
                 }
+                first = 1;
             }
 
-            if (!finalExpression.equals(expression.getExpressionString())) {
-                if (expression instanceof SpelExpression spelExpression) {
-                    if (spelExpression.getAST().getChild(0) instanceof Literal) {
-                        // Ex: 'Hello'.contains(#deferred.get('val')
-                        finalExpression = "{(" + finalExpression + ")}";
-                    } else {
-                        finalExpression = "{" + finalExpression + "}";
-                    }
+            final boolean branching = node instanceof OpOr || node instanceof OpAnd || node instanceof Ternary || node instanceof Elvis;
+
+            for (int i = first; i < children.length; i++) {
+                final SpelNodeImpl child = guard(children[i], conditional || (branching && i > 0));
+                if (child != children[i]) {
+                    SpelNodes.replaceChild(node, i, child);
+                }
+            }
+
+            return node;
+        }
+
+        private SpelNodeImpl guard(VariableReference variableReference, String path, boolean conditional) {
+            if (!conditional) {
+                unconditional.add(path);
+                return variableReference;
+            }
+
+            // Ex: '%0' for '{#a || #deferHolder.get('val')}', the deferred call is always resolved by the evaluation.
+            final boolean deferredCall = expressionsToDefer != null && expressionsToDefer.containsKey(rootName(path));
+
+            if (!deferredCall) {
+                this.conditional.add(path);
+
+                if (!requiresDeferredVariable(path)) {
+                    // Resolved before the evaluation, as if it wasn't conditional.
+                    unconditional.add(path);
+                    return variableReference;
                 }
+            }
+
+            hasConditionalVariables = true;
+            return new DeferredVariableGuard(variableReference, path);
+        }
 
-                this.rebuiltExpressionForDefer = parser.parseExpression(finalExpression);
+        private boolean requiresDeferredVariable(String path) {
+            for (String deferredVariable : knownDeferredVariables) {
+                if (StagedEvaluationContext.dependsOn(path, deferredVariable)) {
+                    return true;
+                }
             }
+            return false;
         }
     }
 
-    private void addDeferExpression(List<SpelNodeImpl> nodes, List<String> deferExpressionsCollector) {
-        final String deferExpression = buildCompoundExpression(nodes).toStringAST();
+    /**
+     * Replaces each call chain made on a deferred function holder, ex: <code>#deferHolder.get('val')</code>, by a reference to a deferred variable,
+     * ex: <code>#%0</code>. The replaced nodes become the sub-expression to resolve to get the variable value.
+     * Nested calls are replaced first, ex: <code>#something.get(#deferHolder.get('val')).size()</code> gives <code>%0 = #deferHolder.get('val')</code>,
+     * <code>%1 = #something.get(#%0)</code> and <code>#%1.size()</code>.
+     */
+    private class DeferredCallsRewriter {
+
+        private final LinkedHashMap<String, CachedExpression> deferred = new LinkedHashMap<>();
+        private final Map<String, String> namesBySubExpression = new HashMap<>();
 
-        if (knownDeferredFunctionHolders.stream().anyMatch(deferExpression::contains)) {
-            deferExpressionsCollector.add(deferExpression);
+        boolean hasDeferred() {
+            return !deferred.isEmpty();
         }
-    }
 
-    private boolean makesUseOfDeferFunctions() {
-        return (
-            variables != null && knownDeferredFunctionHolders != null && variables.stream().anyMatch(knownDeferredFunctionHolders::contains)
-        );
-    }
+        /**
+         * @return the node to use in place of the given one, the node itself unless it is entirely a deferred call.
+         */
+        SpelNodeImpl rewrite(SpelNodeImpl node, boolean root) {
+            if (node instanceof CompoundExpression compoundExpression) {
+                return rewrite(compoundExpression, root);
+            }
 
-    private CompoundExpression buildCompoundExpression(List<SpelNodeImpl> sub) {
-        return new CompoundExpression(
-            sub.get(0).getStartPosition(),
-            sub.get(sub.size() - 1).getEndPosition(),
-            sub.toArray(new SpelNodeImpl[0])
-        );
+            final SpelNodeImpl[] children = SpelNodes.children(node);
+
+            for (int i = 0; i < children.length; i++) {
+                final SpelNodeImpl child = rewrite(children[i], false);
+                if (child != children[i]) {
+                    SpelNodes.replaceChild(node, i, child);
+                }
+            }
+
+            return node;
+        }
+
+        private SpelNodeImpl rewrite(CompoundExpression expression, boolean root) {
+            // Ex: "#value.content.val1.get('val')[0]"
+            final SpelNodeImpl[] children = SpelNodes.children(expression);
+            final List<SpelNodeImpl> rewritten = new ArrayList<>(children.length);
+
+            // Only a chain starting with a variable can be deferred, it stops at the first node which is not a property, a method or an indexer.
+            boolean inChain = children[0] instanceof VariableReference;
+            boolean deferredChain = false;
+            boolean changed = false;
+
+            for (int i = 0; i < children.length; i++) {
+                // Arguments and indexes first, ex: #something.get(#deferHolder.get('val')).
+                final SpelNodeImpl node = rewrite(children[i], false);
+                changed |= node != children[i];
+                rewritten.add(node);
+
+                if (!inChain || i == 0 || node instanceof PropertyOrFieldReference) {
+                    deferredChain |= inChain && referencesDeferred(node);
+                    continue;
+                }
+
+                if (!(node instanceof MethodReference || node instanceof Indexer)) {
+                    inChain = false;
+                    continue;
+                }
+
+                deferredChain |= referencesDeferred(node);
+
+                if (deferredChain && !(root && i == children.length - 1)) {
+                    // nodes: [deferHolder, get('val')] -> [%0]
+                    final VariableReference variable = defer(rewritten);
+                    rewritten.clear();
+                    rewritten.add(variable);
+                    changed = true;
+                }
+            }
+
+            if (!changed) {
+                return expression;
+            }
+
+            if (rewritten.size() == 1) {
+                // The whole compound expression is a deferred call.
+                return rewritten.get(0);
+            }
+
+            SpelNodes.replaceChildren(expression, rewritten.toArray(new SpelNodeImpl[0]));
+            return expression;
+        }
+
+        private VariableReference defer(List<SpelNodeImpl> nodes) {
+            final CompoundExpression compoundExpression = new CompoundExpression(
+                nodes.get(0).getStartPosition(),
+                nodes.get(nodes.size() - 1).getEndPosition(),
+                nodes.toArray(new SpelNodeImpl[0])
+            );
+            final String subExpression = compoundExpression.toStringAST();
+
+            // The same call made several times is only resolved once.
+            String name = namesBySubExpression.get(subExpression);
+
+            if (name == null) {
+                // The results of the deferred calls are held by the evaluation context of each evaluation, names only have to be unique per expression.
+                // The prefix can't start a SpEL identifier, a variable of the template context can't be mistaken for a deferred call.
+                name = DEFERRED_CALL_PREFIX + deferred.size();
+                namesBySubExpression.put(subExpression, name);
+                // Nested deferred calls are already replaced, there is nothing left to defer in the sub-expression itself.
+                deferred.put(
+                    name,
+                    new CachedExpression(new SpelExpression(subExpression, compoundExpression, parser.getConfiguration()), parser, Set.of())
+                );
+            }
+
+            return new DeferredCallReference(name, compoundExpression.getStartPosition(), compoundExpression.getEndPosition());
+        }
+
+        private boolean referencesDeferred(SpelNodeImpl node) {
+            if (node instanceof VariableReference variableReference) {
+                final String name = getVariableName(variableReference);
+                return knownDeferredFunctionHolders.contains(name) || deferred.containsKey(name);
+            }
+
+            for (SpelNodeImpl child : SpelNodes.children(node)) {
+                if (referencesDeferred(child)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
     }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import org.springframework.expression.spel.ast.VariableReference;
+
+/**
+ * Reference to the result of a deferred call, ex: <code>#%0</code> in place of <code>#deferHolder.get('val')</code>, see
+ * {@link CachedExpression#expressionsToDefer()}. The result is held by the evaluation context of a single evaluation, the reference is never
+ * bound to a variable slot.
+ *
+ * @author GraviteeSource Team
+ */
+final class DeferredCallReference extends VariableReference {
+
+    DeferredCallReference(String name, int startPos, int endPos) {
+        super(name, startPos, endPos);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import io.gravitee.el.spel.context.StagedEvaluationContext;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the deferred calls of a single evaluation, see {@link CachedExpression#expressionsToDefer()}. They form a graph: a call depending on
+ * another one references it as a variable (ex: <code>#something.get(#%0)</code>) and is resolved after it, the independent ones are resolved
+ * concurrently. Each call is resolved once per evaluation and its result is given to the {@link StagedEvaluationContext} of the evaluation, the
+ * template context and its registrations are left untouched.
+ *
+ * @author GraviteeSource Team
+ */
+final class DeferredCalls {
+
+    private final SpelExpressionEvaluator evaluator;
+    private final Map<String, CachedExpression> calls;
+    private final SpelTemplateContext templateContext;
+    private final StagedEvaluationContext evaluationContext;
+    private final Map<String, Completable> resolutions = new ConcurrentHashMap<>();
+    private Set<String> resolved;
+
+    DeferredCalls(
+        SpelExpressionEvaluator evaluator,
+        CachedExpression cachedExpression,
+        SpelTemplateContext templateContext,
+        StagedEvaluationContext evaluationContext
+    ) {
+        this.evaluator = evaluator;
+        this.calls = cachedExpression.expressionsToDefer();
+        this.templateContext = templateContext;
+        this.evaluationContext = evaluationContext;
+    }
+
+    /**
+     * @return the calls the expression makes whatever the branches it evaluates, resolved concurrently.
+     */
+    Completable resolveUnconditional(CachedExpression cachedExpression) {
+        return resolve(unconditional(cachedExpression));
+    }
+
+    /**
+     * Synchronous counterpart of {@link #resolveUnconditional(CachedExpression)}.
+     */
+    void resolveUnconditionalNow(CachedExpression cachedExpression) {
+        resolveNow(unconditional(cachedExpression));
+    }
+
+    /**
+     * @param names deferred variables and calls, ex: the ones of a {@link io.gravitee.el.spel.context.DeferredVariableRequiredException}.
+     * @return the resolution of the deferred calls among them.
+     */
+    Completable resolve(Collection<String> names) {
+        final List<Completable> resolutions = new ArrayList<>(names.size());
+
+        for (String name : names) {
+            if (calls.containsKey(name)) {
+                resolutions.add(resolve(name));
+            }
+        }
+
+        return resolutions.size() == 1 ? resolutions.get(0) : Completable.merge(resolutions);
+    }
+
+    /**
+     * Synchronous counterpart of {@link #resolve(Collection)}, the deferred calls must complete as soon as they are subscribed.
+     */
+    void resolveNow(Collection<String> names) {
+        for (String name : names) {
+            if (calls.containsKey(name)) {
+                resolveNow(name);
+            }
+        }
+    }
+
+    /**
+     * @return the given names without the deferred calls, i.e. the deferred variables of the template context.
+     */
+    List<String> withoutCalls(List<String> names) {
+        List<String> variables = null;
+
+        for (String name : names) {
+            if (!calls.containsKey(name)) {
+                if (variables == null) {
+                    variables = new ArrayList<>(names.size());
+                }
+                variables.add(name);
+            }
+        }
+
+        return variables == null ? List.of() : variables;
+    }
+
+    private Completable resolve(String name) {
+        // Deferred so that the dependencies are only looked up on subscription, outside of the computeIfAbsent.
+        return resolutions.computeIfAbsent(name, key -> Completable.defer(() -> call(key)).cache());
+    }
+
+    private Completable call(String name) {
+        final CachedExpression call = calls.get(name);
+
+        return resolve(dependencies(call))
+            // Only resolves the deferred variables of the call, it is evaluated against the context holding the results of the other calls.
+            .andThen(templateContext.evaluationContext(call).ignoreElement())
+            .andThen(Maybe.defer(() -> toMaybe(evaluator.eval(call.getExpression(), evaluationContext))))
+            .doOnSuccess(result -> evaluationContext.setDeferredCallResult(name, result))
+            .doOnComplete(() -> evaluationContext.setDeferredCallResult(name, null))
+            .ignoreElement();
+    }
+
+    private void resolveNow(String name) {
+        if (resolved == null) {
+            resolved = new HashSet<>();
+        } else if (resolved.contains(name)) {
+            return;
+        }
+
+        final CachedExpression call = calls.get(name);
+
+        resolveNow(dependencies(call));
+        templateContext.evaluationContextNow(call);
+        evaluationContext.setDeferredCallResult(name, SpelExpressionEvaluator.resolveNow(evaluator.eval(call.getExpression(), evaluationContext), call.getExpression()));
+        resolved.add(name);
+    }
+
+    /**
+     * @return the other calls the given one references, ex: <code>%0</code> for <code>#something.get(#%0)</code>.
+     */
+    private List<String> dependencies(CachedExpression call) {
+        List<String> dependencies = null;
+
+        for (String variable : call.getVariables()) {
+            if (calls.containsKey(variable)) {
+                if (dependencies == null) {
+                    dependencies = new ArrayList<>(1);
+                }
+                dependencies.add(variable);
+            }
+        }
+
+        return dependencies == null ? List.of() : dependencies;
+    }
+
+    private List<String> unconditional(CachedExpression cachedExpression) {
+        final Set<String> unconditionalPaths = cachedExpression.getUnconditionalVariablePaths();
+        final List<String> names = new ArrayList<>(calls.size());
+
+        for (String name : calls.keySet()) {
+            if (unconditionalPaths.contains(name)) {
+                names.add(name);
+            }
+        }
+
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Maybe<Object> toMaybe(Object result) {
+        if (result instanceof Maybe<?> maybeValue) {
+            return (Maybe<Object>) maybeValue;
+        } else if (result instanceof Single<?> singleValue) {
+            return ((Single<Object>) singleValue).toMaybe();
+        }
+
+        return SpelExpressionEvaluator.toMaybe(result);
+    }
+}
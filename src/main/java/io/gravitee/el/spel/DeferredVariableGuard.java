@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.spel.context.StagedEvaluationContext;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.expression.EvaluationException;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
+import org.springframework.expression.spel.ExpressionState;
+import org.springframework.expression.spel.ast.SpelNodeImpl;
+import org.springframework.expression.spel.ast.VariableReference;
+
+/**
+ * Wraps a variable accessed in a conditional branch, ex: <code>#request.content</code> in <code>{#a || #request.content == 'b'}</code>, so that
+ * a {@link StagedEvaluationContext} can interrupt the evaluation when the branch requires a deferred variable not resolved yet.
+ * It is transparent for any other evaluation context and compiles as the wrapped variable, preceded by the same check.
+ *
+ * @author GraviteeSource Team
+ */
+final class DeferredVariableGuard extends SpelNodeImpl {
+
+    private static final String STAGED_EVALUATION_CONTEXT = "io/gravitee/el/spel/context/StagedEvaluationContext";
+    private static final String REQUIRE_RESOLVED_DESCRIPTOR = "(Lorg/springframework/expression/EvaluationContext;Ljava/lang/String;)V";
+
+    private final String path;
+
+    DeferredVariableGuard(VariableReference variableReference, String path) {
+        super(variableReference.getStartPosition(), variableReference.getEndPosition(), variableReference);
+        this.path = path;
+    }
+
+    @Override
+    public TypedValue getValueInternal(ExpressionState state) throws EvaluationException {
+        StagedEvaluationContext.requireResolved(state.getEvaluationContext(), path);
+
+        final TypedValue value = this.children[0].getValueInternal(state);
+        this.exitTypeDescriptor = this.children[0].getExitDescriptor();
+        return value;
+    }
+
+    @Override
+    public boolean isCompilable() {
+        return this.children[0].isCompilable();
+    }
+
+    @Override
+    public void generateCode(MethodVisitor mv, CodeFlow cf) {
+        // The evaluation context is the second argument of the compiled getValue(Object, EvaluationContext).
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitLdcInsn(path);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, STAGED_EVALUATION_CONTEXT, "requireResolved", REQUIRE_RESOLVED_DESCRIPTOR, false);
+        this.children[0].generateCode(mv, cf);
+    }
+
+    @Override
+    public String toStringAST() {
+        return this.children[0].toStringAST();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeObserver;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.exceptions.Exceptions;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+
+/**
+ * Evaluates an expression that doesn't require any deferred variable on subscription.
+ * It is equivalent to <code>Maybe.fromCallable(...).flatMap(...)</code> without allocating the intermediate operators: the value is emitted
+ * directly, unless the expression returns a <code>Maybe</code> or a <code>Single</code> (ex: <code>{#deferHolder.get('val')}</code>), the
+ * observer is then subscribed to it.
+ *
+ * @author GraviteeSource Team
+ */
+final class EvaluationMaybe<T> extends Maybe<T> {
+
+    private final SpelExpressionEvaluator evaluator;
+    private final Expression expression;
+    private final EvaluationContext evaluationContext;
+    private final Class<T> clazz;
+
+    EvaluationMaybe(SpelExpressionEvaluator evaluator, Expression expression, EvaluationContext evaluationContext, Class<T> clazz) {
+        this.evaluator = evaluator;
+        this.expression = expression;
+        this.evaluationContext = evaluationContext;
+        this.clazz = clazz;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void subscribeActual(MaybeObserver<? super T> observer) {
+        final Object result;
+
+        try {
+            result = evaluator.eval(expression, evaluationContext, clazz);
+        } catch (Throwable t) {
+            Exceptions.throwIfFatal(t);
+            observer.onSubscribe(Disposable.empty());
+            observer.onError(t);
+            return;
+        }
+
+        if (result instanceof Maybe<?> maybeValue) {
+            ((Maybe<T>) maybeValue).subscribe(observer);
+        } else if (result instanceof Single<?> singleValue) {
+            ((Single<T>) singleValue).toMaybe().subscribe(observer);
+        } else {
+            final Disposable disposable = Disposable.empty();
+            observer.onSubscribe(disposable);
+
+            if (!disposable.isDisposed()) {
+                if (result == null) {
+                    observer.onComplete();
+                } else {
+                    observer.onSuccess((T) result);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+/**
+ * Computes a canonical form of a template so that templates only differing by their formatting share the same cache entry.
+ * <p/>
+ * Only the expression segments (<code>{#...}</code>, <code>{T...}</code> or <code>{(...)}</code>) are normalized, literal text is kept as is:
+ * <ul>
+ *     <li>whitespaces between the opening <code>{</code> and the expression are removed, ex: <code>{ #request.id}</code> becomes <code>{#request.id}</code></li>
+ *     <li>whitespaces before the closing <code>}</code> are removed, ex: <code>{#request.id }</code> becomes <code>{#request.id}</code></li>
+ *     <li>double-quoted string literals are single-quoted, ex: <code>{#request.headers["X"]}</code> becomes <code>{#request.headers['X']}</code></li>
+ * </ul>
+ * Whenever a segment boundary is ambiguous (e.g. a closing brace inside a string literal), the template is returned unchanged.
+ *
+ * @author GraviteeSource Team
+ */
+final class ExpressionCanonicalizer {
+
+    private ExpressionCanonicalizer() {}
+
+    /**
+     * Returns the canonical form of the template, or the very same instance when the template is already canonical.
+     *
+     * @param expression the template to canonicalize.
+     * @return the canonical template.
+     */
+    static String canonicalize(String expression) {
+        final int length = expression.length();
+        StringBuilder builder = null;
+        int copied = 0;
+        int open = expression.indexOf('{');
+
+        while (open >= 0) {
+            final int start = TemplateScanner.expressionStart(expression, open);
+            final int end = start < 0 ? -1 : TemplateScanner.segmentEnd(expression, start);
+
+            if (end < 0) {
+                open = expression.indexOf('{', open + 1);
+                continue;
+            }
+
+            if (end != expressionEnd(expression, start)) {
+                // The segment is not delimited the same way by the template parser, don't take the risk to alter it.
+                return expression;
+            }
+
+            if (start > open + 1 || isWhitespace(expression.charAt(end - 1)) || hasDoubleQuotedLiteral(expression, start, end)) {
+                if (builder == null) {
+                    builder = new StringBuilder(length);
+                }
+                builder.append(expression, copied, open + 1);
+                appendSegment(builder, expression, start, end);
+                copied = end;
+            }
+
+            open = expression.indexOf('{', end + 1);
+        }
+
+        if (builder == null) {
+            return expression;
+        }
+
+        return builder.append(expression, copied, length).toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    /**
+     * Finds the closing brace of a segment the same way the template parser does: skipping string literals and balanced brackets.
+     */
+    private static int expressionEnd(String expression, int from) {
+        final int length = expression.length();
+        final StringBuilder brackets = new StringBuilder();
+        int pos = from;
+
+        while (pos < length) {
+            final char c = expression.charAt(pos);
+
+            if (c == '}' && brackets.isEmpty()) {
+                return pos;
+            }
+
+            switch (c) {
+                case '{', '[', '(' -> brackets.append(c);
+                case '}', ']', ')' -> {
+                    if (brackets.isEmpty() || !isMatching(brackets.charAt(brackets.length() - 1), c)) {
+                        return -1;
+                    }
+                    brackets.setLength(brackets.length() - 1);
+                }
+                case '\'', '"' -> {
+                    pos = expression.indexOf(c, pos + 1);
+                    if (pos < 0) {
+                        return -1;
+                    }
+                }
+                default -> {
+                    // Nothing to do.
+                }
+            }
+            pos++;
+        }
+
+        return -1;
+    }
+
+    private static boolean isMatching(char open, char close) {
+        return (open == '{' && close == '}') || (open == '[' && close == ']') || (open == '(' && close == ')');
+    }
+
+    private static boolean hasDoubleQuotedLiteral(String expression, int from, int to) {
+        final int quote = expression.indexOf('"', from);
+        return quote >= 0 && quote < to;
+    }
+
+    private static void appendSegment(StringBuilder builder, String expression, int from, int to) {
+        int end = to;
+        while (end > from && isWhitespace(expression.charAt(end - 1))) {
+            end--;
+        }
+
+        int pos = from;
+
+        while (pos < end) {
+            final char c = expression.charAt(pos);
+
+            if (c == '\'') {
+                final int close = expression.indexOf('\'', pos + 1);
+                builder.append(expression, pos, close + 1);
+                pos = close + 1;
+            } else if (c == '"') {
+                int close = expression.indexOf('"', pos + 1);
+                boolean convertible = expression.indexOf('\'', pos + 1) < 0 || expression.indexOf('\'', pos + 1) > close;
+
+                while (close + 1 < end && expression.charAt(close + 1) == '"') {
+                    // Doubled quote used as an escape, ex: "a""b", keep the literal as is.
+                    convertible = false;
+                    close = expression.indexOf('"', close + 2);
+                }
+
+                if (convertible) {
+                    builder.append('\'').append(expression, pos + 1, close).append('\'');
+                } else {
+                    builder.append(expression, pos, close + 1);
+                }
+                pos = close + 1;
+            } else {
+                builder.append(c);
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.DeferredVariableOptions;
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.spel.context.DeferredFunctionHolder;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+
+/**
+ * {@link TemplateContext} of a {@link PooledSpelTemplateEngine}, failing once the engine has been released like the engine itself does.
+ *
+ * @author GraviteeSource Team
+ */
+final class PooledSpelTemplateContext implements TemplateContext {
+
+    private final PooledSpelTemplateEngine engine;
+
+    PooledSpelTemplateContext(PooledSpelTemplateEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public void setVariable(String name, Object value) {
+        unwrap().setVariable(name, value);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Completable deferred) {
+        unwrap().setDeferredVariable(name, deferred);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Maybe<?> deferred) {
+        unwrap().setDeferredVariable(name, deferred);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Single<?> deferred) {
+        unwrap().setDeferredVariable(name, deferred);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Completable deferred, DeferredVariableOptions options) {
+        unwrap().setDeferredVariable(name, deferred, options);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Maybe<?> deferred, DeferredVariableOptions options) {
+        unwrap().setDeferredVariable(name, deferred, options);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Single<?> deferred, DeferredVariableOptions options) {
+        unwrap().setDeferredVariable(name, deferred, options);
+    }
+
+    @Override
+    public void setDeferredVariablesMaxConcurrency(int maxConcurrency) {
+        unwrap().setDeferredVariablesMaxConcurrency(maxConcurrency);
+    }
+
+    @Override
+    public void setDeferredFunctionHolderVariable(String name, DeferredFunctionHolder deferredFunctionHolder) {
+        unwrap().setDeferredFunctionHolderVariable(name, deferredFunctionHolder);
+    }
+
+    @Override
+    public Object lookupVariable(String name) {
+        return unwrap().lookupVariable(name);
+    }
+
+    /**
+     * @return the recycled context, as long as the engine has not been released.
+     */
+    SpelTemplateContext unwrap() {
+        return engine.spelTemplateContext();
+    }
+
+    /**
+     * @return the given evaluation, failing when subscribed once the engine has been released.
+     */
+    <T> Maybe<T> guard(Maybe<T> evaluation) {
+        return engine.guard(evaluation);
+    }
+}
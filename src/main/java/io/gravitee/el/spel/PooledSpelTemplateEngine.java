@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.CompiledTemplate;
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import io.reactivex.rxjava3.core.Maybe;
+
+/**
+ * {@link SpelTemplateEngine} handed out by a {@link SpelTemplateEnginePool} for a single acquisition of a recycled context. It is stamped with the
+ * generation of the context: using it, its {@link #getTemplateContext()} or subscribing to its evaluations once released fails, even after the
+ * context has been acquired again.
+ *
+ * @author GraviteeSource Team
+ */
+final class PooledSpelTemplateEngine extends SpelTemplateEngine {
+
+    private final SpelTemplateEnginePool pool;
+    private final SpelTemplateEnginePool.Entry entry;
+    private final int generation;
+    private final PooledSpelTemplateContext pooledTemplateContext;
+
+    PooledSpelTemplateEngine(SpelExpressionParser expressionParser, SpelTemplateEnginePool pool, SpelTemplateEnginePool.Entry entry) {
+        super(expressionParser, entry.getTemplateContext());
+        this.pool = pool;
+        this.entry = entry;
+        this.generation = entry.getGeneration();
+        this.pooledTemplateContext = new PooledSpelTemplateContext(this);
+    }
+
+    @Override
+    public void release() {
+        ensureNotReleased();
+        pool.release(entry);
+    }
+
+    @Override
+    public <T> T evalNow(String expression, Class<T> clazz) {
+        ensureNotReleased();
+        return super.evalNow(expression, clazz);
+    }
+
+    @Override
+    public <T> Maybe<T> eval(String expression, Class<T> clazz) {
+        ensureNotReleased();
+        return guard(super.eval(expression, clazz));
+    }
+
+    @Override
+    public Maybe<Boolean> evalBoolean(String expression) {
+        ensureNotReleased();
+        return guard(super.evalBoolean(expression));
+    }
+
+    @Override
+    public boolean evalBooleanNow(String expression) {
+        ensureNotReleased();
+        return super.evalBooleanNow(expression);
+    }
+
+    @Override
+    public long evalLongNow(String expression) {
+        ensureNotReleased();
+        return super.evalLongNow(expression);
+    }
+
+    @Override
+    public double evalDoubleNow(String expression) {
+        ensureNotReleased();
+        return super.evalDoubleNow(expression);
+    }
+
+    @Override
+    public TemplateContext getTemplateContext() {
+        ensureNotReleased();
+        return pooledTemplateContext;
+    }
+
+    @Override
+    public CompiledTemplate compile(String expression) {
+        ensureNotReleased();
+        return super.compile(expression);
+    }
+
+    @Override
+    SpelTemplateContext spelTemplateContext() {
+        ensureNotReleased();
+        return templateContext;
+    }
+
+    /**
+     * @return the given evaluation, failing when subscribed once this engine has been released.
+     */
+    <T> Maybe<T> guard(Maybe<T> evaluation) {
+        return Maybe.defer(() -> {
+            ensureNotReleased();
+            return evaluation;
+        });
+    }
+
+    void ensureNotReleased() {
+        if (entry.getGeneration() != generation) {
+            throw new IllegalStateException("The template engine has been released, it can't be used anymore");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.spel.context.VariableSlots;
+import java.lang.reflect.Modifier;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.CodeFlow;
+import org.springframework.expression.spel.ExpressionState;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.ast.VariableReference;
+
+/**
+ * Variable reference bound to the slot of its name when the expression is parsed, ex: <code>#request</code>, see {@link VariableSlots}.
+ * Both the interpreted and the compiled evaluations read the variable by its slot instead of looking its name up.
+ *
+ * @author GraviteeSource Team
+ */
+final class SlotVariableReference extends VariableReference {
+
+    private static final String VARIABLE_SLOTS = "io/gravitee/el/spel/context/VariableSlots";
+    private static final String LOOKUP_VARIABLE_DESCRIPTOR = "(Lorg/springframework/expression/EvaluationContext;ILjava/lang/String;)Ljava/lang/Object;";
+
+    private final String name;
+    private final int slot;
+
+    SlotVariableReference(VariableReference variableReference, String name, int slot) {
+        super(name, variableReference.getStartPosition(), variableReference.getEndPosition());
+        this.name = name;
+        this.slot = slot;
+    }
+
+    @Override
+    public TypedValue getValueInternal(ExpressionState state) throws SpelEvaluationException {
+        final Object value = VariableSlots.lookupVariable(state.getEvaluationContext(), slot, name);
+
+        // Same exit type as VariableReference, used when the expression gets compiled.
+        this.exitTypeDescriptor = value == null || !Modifier.isPublic(value.getClass().getModifiers())
+            ? "Ljava/lang/Object"
+            : CodeFlow.toDescriptorFromObject(value);
+
+        return value == null ? TypedValue.NULL : new TypedValue(value);
+    }
+
+    @Override
+    public void generateCode(MethodVisitor mv, CodeFlow cf) {
+        // The evaluation context is the second argument of the compiled getValue(Object, EvaluationContext).
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitLdcInsn(slot);
+        mv.visitLdcInsn(name);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, VARIABLE_SLOTS, "lookupVariable", LOOKUP_VARIABLE_DESCRIPTOR, false);
+        CodeFlow.insertCheckCast(mv, this.exitTypeDescriptor);
+        cf.pushDescriptor(this.exitTypeDescriptor);
+    }
+}
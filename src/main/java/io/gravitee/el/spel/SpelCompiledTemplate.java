@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static io.gravitee.el.exceptions.ExpressionEvaluationException.buildCause;
+
+import io.gravitee.el.CompiledTemplate;
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import io.reactivex.rxjava3.core.Maybe;
+
+/**
+ * {@link CompiledTemplate} holding the {@link CachedExpression} of the template.
+ *
+ * @author GraviteeSource Team
+ */
+public class SpelCompiledTemplate implements CompiledTemplate {
+
+    private final String expression;
+    private final CachedExpression cachedExpression;
+    private final SpelExpressionParser spelExpressionParser;
+
+    SpelCompiledTemplate(String expression, CachedExpression cachedExpression, SpelExpressionParser spelExpressionParser) {
+        this.expression = expression;
+        this.cachedExpression = cachedExpression;
+        this.spelExpressionParser = spelExpressionParser;
+    }
+
+    @Override
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public <T> Maybe<T> eval(TemplateContext context, Class<T> clazz) {
+        if (context instanceof PooledSpelTemplateContext pooledContext) {
+            return pooledContext.guard(eval(pooledContext.unwrap(), clazz));
+        }
+
+        try {
+            final SpelTemplateContext templateContext = toSpelTemplateContext(context);
+            return spelExpressionParser.getEvaluator().eval(cachedExpression(templateContext), templateContext, clazz);
+        } catch (ExpressionEvaluationException e) {
+            return Maybe.error(e);
+        } catch (Exception e) {
+            return Maybe.error(buildCause(expression, e));
+        }
+    }
+
+    @Override
+    public <T> T evalNow(TemplateContext context, Class<T> clazz) {
+        final SpelTemplateContext templateContext = toSpelTemplateContext(context);
+        return spelExpressionParser.getEvaluator().evalNow(cachedExpression(templateContext), templateContext, clazz);
+    }
+
+    @Override
+    public Maybe<Boolean> evalBoolean(TemplateContext context) {
+        if (context instanceof PooledSpelTemplateContext pooledContext) {
+            return pooledContext.guard(evalBoolean(pooledContext.unwrap()));
+        }
+
+        try {
+            final SpelTemplateContext templateContext = toSpelTemplateContext(context);
+            return spelExpressionParser.getEvaluator().evalBoolean(cachedExpression(templateContext), templateContext);
+        } catch (ExpressionEvaluationException e) {
+            return Maybe.error(e);
+        } catch (Exception e) {
+            return Maybe.error(buildCause(expression, e));
+        }
+    }
+
+    @Override
+    public boolean evalBooleanNow(TemplateContext context) {
+        final SpelTemplateContext templateContext = toSpelTemplateContext(context);
+        return spelExpressionParser.getEvaluator().evalBooleanNow(cachedExpression(templateContext), templateContext);
+    }
+
+    @Override
+    public long evalLongNow(TemplateContext context) {
+        final SpelTemplateContext templateContext = toSpelTemplateContext(context);
+        return spelExpressionParser.getEvaluator().evalLongNow(cachedExpression(templateContext), templateContext);
+    }
+
+    @Override
+    public double evalDoubleNow(TemplateContext context) {
+        final SpelTemplateContext templateContext = toSpelTemplateContext(context);
+        return spelExpressionParser.getEvaluator().evalDoubleNow(cachedExpression(templateContext), templateContext);
+    }
+
+    private CachedExpression cachedExpression(SpelTemplateContext templateContext) {
+        if (cachedExpression.isAnalysedFor(templateContext.knownDeferredVariablesName(), templateContext.deferredVariablesName())) {
+            return cachedExpression;
+        }
+
+        // The context exposes other deferred function holders or variables than the ones used for the compilation, the analysis for them is needed.
+        return spelExpressionParser.parseAndCacheExpression(expression, templateContext);
+    }
+
+    private static SpelTemplateContext toSpelTemplateContext(TemplateContext context) {
+        if (context instanceof PooledSpelTemplateContext pooledContext) {
+            return pooledContext.unwrap();
+        }
+        if (!(context instanceof SpelTemplateContext templateContext)) {
+            throw new IllegalArgumentException("TemplateContext must be an instance of SpelTemplateContext to evaluate a compiled template.");
+        }
+        return templateContext;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.context.DeferredVariableRequiredException;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import io.gravitee.el.spel.context.StagedEvaluationContext;
+import io.gravitee.el.spel.context.SynchronousResolver;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.List;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.EvaluationException;
+import org.springframework.expression.Expression;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.common.ExpressionUtils;
+
+/**
+ * Evaluates {@link CachedExpression} against a {@link SpelTemplateContext}, resolving the deferred variables and functions first.
+ * It doesn't hold any state and can be shared by all the {@link SpelTemplateEngine} and {@link SpelCompiledTemplate} of a parser.
+ *
+ * @author GraviteeSource Team
+ */
+final class SpelExpressionEvaluator {
+
+    @SuppressWarnings("unchecked")
+    <T> Maybe<T> eval(CachedExpression cachedExpression, SpelTemplateContext templateContext, Class<T> clazz) {
+        if (cachedExpression.isLiteral()) {
+            if (clazz == String.class || clazz == Object.class) {
+                return (Maybe<T>) cachedExpression.getLiteral();
+            }
+
+            return cachedExpression.getLiteral().flatMap(literal -> toMaybe(convert(literal, templateContext.getContext(), clazz)));
+        }
+
+        final Expression expression = cachedExpression.getExpression();
+        final Maybe<T> evaluation;
+
+        if (!cachedExpression.expressionsToDefer().isEmpty()) {
+            // Ex: {#deferHolder.get('val') == 'b'}, the deferred calls are resolved for this evaluation only, along with the deferred variables.
+            evaluation =
+                templateContext
+                    .deferredCallsEvaluationContext(cachedExpression)
+                    .flatMapMaybe(evaluationContext -> {
+                        final DeferredCalls deferredCalls = new DeferredCalls(this, cachedExpression, templateContext, evaluationContext);
+                        return deferredCalls
+                            .resolveUnconditional(cachedExpression)
+                            .andThen(evalStaged(expression, evaluationContext, templateContext, deferredCalls, clazz));
+                    });
+        } else if (!templateContext.requiresDeferredVariables(cachedExpression)) {
+            // Nothing to resolve first, ex: {#request.headers['X-Gravitee-Endpoint']}, evaluates on subscription without any intermediate operator.
+            return new EvaluationMaybe<>(this, expression, templateContext.getContext(), clazz);
+        } else {
+            evaluation =
+                templateContext
+                    .stagedEvaluationContext(cachedExpression)
+                    .flatMapMaybe(evaluationContext -> {
+                        if (evaluationContext instanceof StagedEvaluationContext stagedEvaluationContext) {
+                            // Some deferred variables are only used by conditional branches, ex: {#a == 'b' || #request.content == 'c'}.
+                            return evalStaged(expression, stagedEvaluationContext, templateContext, null, clazz);
+                        }
+
+                        return Maybe.fromCallable(() -> eval(expression, evaluationContext, clazz));
+                    });
+        }
+
+        return evaluation
+            .flatMap(result -> {
+                if (result instanceof Maybe maybeValue) {
+                    // If we end here, the deferred value isn't resolved yet.
+                    return maybeValue;
+                } else if (result instanceof Single singleValue) {
+                    // If we end here, the deferred value isn't resolved yet.
+                    return singleValue.toMaybe();
+                }
+
+                return Maybe.just(result);
+            });
+    }
+
+    /**
+     * Evaluates the expression, resolving the deferred variables required by a conditional branch and evaluating again each time the evaluation
+     * reaches one of them.
+     */
+    private <T> Maybe<T> evalStaged(
+        Expression expression,
+        StagedEvaluationContext evaluationContext,
+        SpelTemplateContext templateContext,
+        DeferredCalls deferredCalls,
+        Class<T> clazz
+    ) {
+        return Maybe.defer(() -> {
+            try {
+                return toMaybe(eval(expression, evaluationContext, clazz));
+            } catch (DeferredVariableRequiredException e) {
+                return resolve(e.getNames(), templateContext, deferredCalls)
+                    .doOnComplete(() -> evaluationContext.resolved(e.getNames()))
+                    .andThen(evalStaged(expression, evaluationContext, templateContext, deferredCalls, clazz));
+            }
+        });
+    }
+
+    /**
+     * Resolves the deferred variables and calls a conditional branch requires.
+     */
+    private static Completable resolve(List<String> names, SpelTemplateContext templateContext, DeferredCalls deferredCalls) {
+        if (deferredCalls == null) {
+            return templateContext.resolveDeferredVariables(names);
+        }
+
+        final List<String> variables = deferredCalls.withoutCalls(names);
+
+        if (variables.isEmpty()) {
+            return deferredCalls.resolve(names);
+        }
+
+        return Completable.mergeArray(templateContext.resolveDeferredVariables(variables), deferredCalls.resolve(names));
+    }
+
+    /**
+     * Synchronous evaluation, the deferred variables and functions must complete as soon as they are subscribed, see {@link SynchronousResolver}.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T evalNow(CachedExpression cachedExpression, SpelTemplateContext templateContext, Class<T> clazz) {
+        if (cachedExpression.isLiteral()) {
+            return convert(cachedExpression.getExpression().getExpressionString(), templateContext.getContext(), clazz);
+        }
+
+        return (T) evalStagedNow(cachedExpression, templateContext, clazz);
+    }
+
+    /**
+     * Same as {@link #evalNow(CachedExpression, SpelTemplateContext, Class)} without converting the result.
+     */
+    Object evalNow(CachedExpression cachedExpression, SpelTemplateContext templateContext) {
+        if (cachedExpression.isLiteral()) {
+            return cachedExpression.getExpression().getExpressionString();
+        }
+
+        return evalStagedNow(cachedExpression, templateContext, null);
+    }
+
+    /**
+     * Synchronous counterpart of {@link #evalStaged(Expression, StagedEvaluationContext, SpelTemplateContext, DeferredCalls, Class)}, the result
+     * is not converted if no class is given.
+     */
+    private Object evalStagedNow(CachedExpression cachedExpression, SpelTemplateContext templateContext, Class<?> clazz) {
+        final Expression expression = cachedExpression.getExpression();
+        final EvaluationContext evaluationContext;
+        DeferredCalls deferredCalls = null;
+
+        if (cachedExpression.expressionsToDefer().isEmpty()) {
+            evaluationContext = templateContext.stagedEvaluationContextNow(cachedExpression);
+        } else {
+            final StagedEvaluationContext stagedEvaluationContext = templateContext.deferredCallsEvaluationContextNow(cachedExpression);
+            deferredCalls = new DeferredCalls(this, cachedExpression, templateContext, stagedEvaluationContext);
+            deferredCalls.resolveUnconditionalNow(cachedExpression);
+            evaluationContext = stagedEvaluationContext;
+        }
+
+        while (true) {
+            try {
+                final Object result = clazz == null ? eval(expression, evaluationContext) : eval(expression, evaluationContext, clazz);
+                return resolveNow(result, expression);
+            } catch (DeferredVariableRequiredException e) {
+                // Each attempt resolves other deferred variables, the evaluation ends once they are all resolved at worst.
+                if (deferredCalls == null) {
+                    templateContext.resolveDeferredVariablesNow(e.getNames());
+                } else {
+                    templateContext.resolveDeferredVariablesNow(deferredCalls.withoutCalls(e.getNames()));
+                    deferredCalls.resolveNow(e.getNames());
+                }
+
+                if (evaluationContext instanceof StagedEvaluationContext stagedEvaluationContext) {
+                    stagedEvaluationContext.resolved(e.getNames());
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates a condition on subscription, as {@link #eval(CachedExpression, SpelTemplateContext, Class)} does, the result being converted the
+     * same way as {@link #evalBooleanNow(CachedExpression, SpelTemplateContext)} does.
+     */
+    Maybe<Boolean> evalBoolean(CachedExpression cachedExpression, SpelTemplateContext templateContext) {
+        final EvaluationContext evaluationContext = templateContext.getContext();
+
+        if (cachedExpression.isLiteral()) {
+            return cachedExpression.getLiteral().map(value -> toBoolean(value, evaluationContext));
+        }
+
+        return eval(cachedExpression, templateContext, Object.class).map(value -> toBoolean(value, evaluationContext));
+    }
+
+    /**
+     * @return the boolean result of the synchronous evaluation, <code>false</code> if the expression evaluates to <code>null</code>.
+     */
+    boolean evalBooleanNow(CachedExpression cachedExpression, SpelTemplateContext templateContext) {
+        final Object result = evalNow(cachedExpression, templateContext);
+        return result != null && toBoolean(result, templateContext.getContext());
+    }
+
+    long evalLongNow(CachedExpression cachedExpression, SpelTemplateContext templateContext) {
+        final Object result = requireNumber(evalNow(cachedExpression, templateContext), cachedExpression);
+
+        if (result instanceof Long || result instanceof Integer || result instanceof Short || result instanceof Byte) {
+            return ((Number) result).longValue();
+        }
+
+        return convert(result, templateContext.getContext(), Long.class);
+    }
+
+    double evalDoubleNow(CachedExpression cachedExpression, SpelTemplateContext templateContext) {
+        final Object result = requireNumber(evalNow(cachedExpression, templateContext), cachedExpression);
+
+        if (result instanceof Number number) {
+            return number.doubleValue();
+        }
+
+        return convert(result, templateContext.getContext(), Double.class);
+    }
+
+    private boolean toBoolean(Object value, EvaluationContext evaluationContext) {
+        if (value instanceof Boolean booleanValue) {
+            return booleanValue;
+        }
+
+        return Boolean.TRUE.equals(convert(value, evaluationContext, Boolean.class));
+    }
+
+    private static Object requireNumber(Object result, CachedExpression cachedExpression) {
+        if (result == null) {
+            final String expression = cachedExpression.getExpression().getExpressionString();
+            throw new ExpressionEvaluationException(expression, new IllegalStateException("The expression returns null, a number is expected"));
+        }
+
+        return result;
+    }
+
+    static Object resolveNow(Object result, Expression expression) {
+        if (result instanceof Maybe<?> maybeValue) {
+            return SynchronousResolver.resolveNow(maybeValue, expression.getExpressionString());
+        } else if (result instanceof Single<?> singleValue) {
+            return SynchronousResolver.resolveNow(singleValue.toMaybe(), expression.getExpressionString());
+        }
+
+        return result;
+    }
+
+    <T> T eval(Expression expression, EvaluationContext evaluationContext, Class<T> clazz) {
+        try {
+            return expression.getValue(evaluationContext, clazz);
+        } catch (EvaluationException spelEvaluationException) {
+            throw new ExpressionEvaluationException(expression.getExpressionString(), spelEvaluationException);
+        }
+    }
+
+    /**
+     * Evaluates the expression without converting the result, saving the {@link TypedValue} and the conversion when the result already has the
+     * expected type.
+     */
+    Object eval(Expression expression, EvaluationContext evaluationContext) {
+        try {
+            return expression.getValue(evaluationContext);
+        } catch (EvaluationException spelEvaluationException) {
+            throw new ExpressionEvaluationException(expression.getExpressionString(), spelEvaluationException);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T convert(Object value, EvaluationContext evaluationContext, Class<T> clazz) {
+        if (clazz.isInstance(value)) {
+            return (T) value;
+        }
+
+        try {
+            // Same conversion as the one applied when evaluating an expression, ex: "true" -> Boolean.TRUE.
+            return ExpressionUtils.convertTypedValue(evaluationContext, new TypedValue(value), clazz);
+        } catch (EvaluationException spelEvaluationException) {
+            throw new ExpressionEvaluationException(String.valueOf(value), spelEvaluationException);
+        }
+    }
+
+    static boolean isLiteral(String expression) {
+        // Expressions always start with '{', a string without any brace is a plain text.
+        return expression != null && expression.indexOf('{') < 0;
+    }
+
+    static <T> Maybe<T> toMaybe(T value) {
+        return value == null ? Maybe.empty() : Maybe.just(value);
+    }
+}
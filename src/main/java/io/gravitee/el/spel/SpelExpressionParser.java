@@ -15,15 +15,22 @@
  */
 package io.gravitee.el.spel;
 
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
+import io.gravitee.el.spel.cache.ExpressionCacheMetrics;
+import io.gravitee.el.spel.cache.ExpressionFailureCache;
 import io.gravitee.el.spel.context.SpelTemplateContext;
-import io.gravitee.node.api.cache.Cache;
-import io.gravitee.node.api.cache.CacheConfiguration;
-import io.gravitee.node.plugin.cache.common.InMemoryCache;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import org.springframework.core.env.Environment;
 import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
 import org.springframework.expression.ParserContext;
 import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.lang.Nullable;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
@@ -33,45 +40,168 @@ public class SpelExpressionParser {
 
     public static final String EXPRESSION_PREFIX = "{#";
     public static final String EXPRESSION_SUFFIX = "}";
-    // This transforms expressions prefixes from user input : {#, {(, or {T
-    // By prefixes that will be well interpreted by our TemplateParserContext : {##, {#(, or {#T
-    // regular '{' characters won't be interpreted as expression prefixes by EL SpelExpressionParser
-    private static final String EXPRESSION_REGEX = "\\{ *([#T(])((?>[^{}]+|\\{(?>[^{}]+)*\\})*\\})";
-    private static final Pattern EXPRESSION_REGEX_PATTERN = Pattern.compile(EXPRESSION_REGEX);
-    private static final String EXPRESSION_REGEX_SUBSTITUTE = EXPRESSION_PREFIX + "$1$2";
     private static final ParserContext PARSER_CONTEXT = new TemplateParserContext(EXPRESSION_PREFIX, EXPRESSION_SUFFIX);
     private org.springframework.expression.spel.standard.SpelExpressionParser expressionParser;
+    private SpelParserConfiguration configuration;
 
-    protected static final Cache<String, CachedExpression> expressions;
+    // Cache shared by all the parsers that have not been given their own cache.
+    private static volatile ExpressionCache sharedExpressions = ExpressionCache.create(ExpressionCacheConfiguration.defaults());
+    private static volatile ExpressionFailureCache sharedFailures = new ExpressionFailureCache(ExpressionCacheConfiguration.defaults());
 
-    private static final int CACHE_EXPRESSION_MAX_SIZE = 20000;
-    private static final int CACHE_EXPRESSION_IDLE_MILLIS = 3600000;
+    private final ExpressionCache expressions;
+    private final ExpressionFailureCache failures;
+    private final ExpressionCacheMetrics metrics = new ExpressionCacheMetrics();
+    private final SpelExpressionEvaluator evaluator = new SpelExpressionEvaluator();
 
-    static {
-        final CacheConfiguration cacheConfiguration = CacheConfiguration
-            .builder()
-            .maxSize(CACHE_EXPRESSION_MAX_SIZE)
-            .timeToIdleInMs(CACHE_EXPRESSION_IDLE_MILLIS)
-            .build();
+    /**
+     * Creates a parser relying on the shared expression cache, see {@link #initialize(Environment)}.
+     */
+    public SpelExpressionParser() {
+        this.expressions = null;
+        this.failures = null;
+    }
+
+    /**
+     * Creates a parser relying on its own expression cache.
+     *
+     * @param expressions the cache to use to store the parsed expressions.
+     */
+    public SpelExpressionParser(ExpressionCache expressions) {
+        this(expressions, new ExpressionFailureCache(ExpressionCacheConfiguration.defaults()));
+    }
+
+    /**
+     * Creates a parser relying on its own expression and parsing failure caches.
+     *
+     * @param expressions the cache to use to store the parsed expressions.
+     * @param failures the cache to use to store the expressions that have failed to parse.
+     */
+    public SpelExpressionParser(ExpressionCache expressions, ExpressionFailureCache failures) {
+        this.expressions = Objects.requireNonNull(expressions, "Expression cache cannot be null");
+        this.failures = Objects.requireNonNull(failures, "Failure cache cannot be null");
+    }
 
-        expressions = new InMemoryCache<>("el", cacheConfiguration);
+    /**
+     * Initialize the shared expression and parsing failure caches from the environment configuration.
+     * Expressions already cached are discarded.
+     *
+     * @param environment an optional environment, if <code>null</code>, the default cache configuration is applied.
+     */
+    public static void initialize(@Nullable Environment environment) {
+        final ExpressionCacheConfiguration configuration = ExpressionCacheConfiguration.from(environment);
+        sharedExpressions = ExpressionCache.create(configuration);
+        sharedFailures = new ExpressionFailureCache(configuration);
     }
 
     public CachedExpression parseAndCacheExpression(String expression, SpelTemplateContext templateContext) {
-        CachedExpression exp = expressions.get(expression);
+        return parseAndCacheExpression(expression, templateContext.knownDeferredVariablesName(), templateContext.deferredVariablesName());
+    }
+
+    /**
+     * Returns the cached expression, parsing and caching it first if needed.
+     *
+     * @param expression the raw expression.
+     * @param knownDeferredFunctionHolders the names of the deferred function holders the expression will be evaluated with.
+     * @return the cached expression.
+     * @throws ExpressionEvaluationException if the expression cannot be parsed.
+     */
+    public CachedExpression parseAndCacheExpression(String expression, Set<String> knownDeferredFunctionHolders) {
+        return parseAndCacheExpression(expression, knownDeferredFunctionHolders, Collections.emptySet());
+    }
+
+    /**
+     * Returns the cached expression, parsing and caching it first if needed.
+     *
+     * @param expression the raw expression.
+     * @param knownDeferredFunctionHolders the names of the deferred function holders the expression will be evaluated with.
+     * @param knownDeferredVariables the names of the deferred variables the expression will be evaluated with.
+     * @return the cached expression, analysed for the given deferred function holders and variables.
+     * @throws ExpressionEvaluationException if the expression cannot be parsed.
+     */
+    public CachedExpression parseAndCacheExpression(String expression, Set<String> knownDeferredFunctionHolders, Set<String> knownDeferredVariables) {
+        final ExpressionCache cache = getExpressionCache();
+
+        // The spelling of the caller is looked up as is first, the expression is only canonicalized when it is not cached yet.
+        CachedExpression exp = cache.get(expression);
         if (exp != null) {
-            return exp;
+            return analysedFor(exp, expression, knownDeferredFunctionHolders, knownDeferredVariables);
+        }
+
+        // Equivalent expressions (e.g. '{ #request.headers["X"] }' and '{#request.headers['X']}') share the same cache entry.
+        final String key = ExpressionCanonicalizer.canonicalize(expression);
+
+        if (key != expression) {
+            exp = cache.get(key);
+            if (exp != null) {
+                // Another spelling of an already cached expression, cached as an extra key to avoid canonicalizing it again.
+                metrics.recordCanonicalizedHit();
+                cache.put(expression, exp);
+                return analysedFor(exp, key, knownDeferredFunctionHolders, knownDeferredVariables);
+            }
+        }
+
+        final ExpressionFailureCache failureCache = getFailureCache();
+
+        ExpressionEvaluationException failure = failureCache.get(key);
+        if (failure != null) {
+            // Known invalid expression, don't waste time parsing it again.
+            metrics.recordFailureHit();
+            throw failure instanceof ParseFailure parseFailure ? parseFailure.forExpression(expression) : failure;
+        }
+
+        try {
+            // The cached entry is analysed without any deferred function holder or variable, the other analyses are attached to it.
+            exp = new CachedExpression(parseExpression(key), this, Collections.emptySet());
+        } catch (ParseException e) {
+            metrics.recordParseFailure();
+            failure = new ParseFailure(expression, e);
+            failureCache.put(key, failure);
+            throw failure;
+        }
+
+        cache.put(key, exp);
+        if (key != expression) {
+            cache.put(expression, exp);
         }
 
-        exp = new CachedExpression(parseExpression(expression), this, templateContext.knownDeferredVariablesName());
-        expressions.put(expression, exp);
+        return analysedFor(exp, key, knownDeferredFunctionHolders, knownDeferredVariables);
+    }
+
+    private CachedExpression analysedFor(
+        CachedExpression exp,
+        String expression,
+        Set<String> knownDeferredFunctionHolders,
+        Set<String> knownDeferredVariables
+    ) {
+        // The analysis rewrites the parsed tree, each set of referenced holders and deferred variables needs its own parsing.
+        return exp.analysedFor(
+            knownDeferredFunctionHolders,
+            knownDeferredVariables,
+            (holders, deferredVariables) -> new CachedExpression(parseExpression(expression), this, holders, deferredVariables)
+        );
+    }
+
+    protected ExpressionCache getExpressionCache() {
+        return expressions != null ? expressions : sharedExpressions;
+    }
 
-        return exp;
+    protected ExpressionFailureCache getFailureCache() {
+        return failures != null ? failures : sharedFailures;
+    }
+
+    public ExpressionCacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    SpelExpressionEvaluator getEvaluator() {
+        return evaluator;
     }
 
     public Expression parseExpression(String expression) {
-        return getParser()
-            .parseExpression(EXPRESSION_REGEX_PATTERN.matcher(expression).replaceAll(EXPRESSION_REGEX_SUBSTITUTE), getParserContext());
+        // This transforms expressions prefixes from user input : {#, {(, or {T
+        // By prefixes that will be well interpreted by our TemplateParserContext : {##, {#(, or {#T
+        // regular '{' characters won't be interpreted as expression prefixes by EL SpelExpressionParser
+        return getParser().parseExpression(TemplateScanner.rewrite(expression), getParserContext());
     }
 
     protected ParserContext getParserContext() {
@@ -80,12 +210,36 @@ public class SpelExpressionParser {
 
     org.springframework.expression.spel.standard.SpelExpressionParser getParser() {
         if (expressionParser == null) {
-            expressionParser =
-                new org.springframework.expression.spel.standard.SpelExpressionParser(
-                    new SpelParserConfiguration(SpelCompilerMode.MIXED, this.getClass().getClassLoader())
-                );
+            expressionParser = new org.springframework.expression.spel.standard.SpelExpressionParser(getConfiguration());
         }
 
         return expressionParser;
     }
+
+    SpelParserConfiguration getConfiguration() {
+        if (configuration == null) {
+            configuration = new SpelParserConfiguration(SpelCompilerMode.MIXED, this.getClass().getClassLoader());
+        }
+
+        return configuration;
+    }
+
+    /**
+     * Parsing failure remembered for all the spellings of an expression, each spelling being reported as written by the caller.
+     */
+    private static final class ParseFailure extends ExpressionEvaluationException {
+
+        private final String expression;
+        private final ParseException parseException;
+
+        private ParseFailure(String expression, ParseException parseException) {
+            super(expression, parseException);
+            this.expression = expression;
+            this.parseException = parseException;
+        }
+
+        ExpressionEvaluationException forExpression(String expression) {
+            return this.expression.equals(expression) ? this : new ParseFailure(expression, parseException);
+        }
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import java.lang.reflect.Field;
+import org.springframework.expression.spel.ast.SpelNodeImpl;
+
+/**
+ * Gives access to the children of a parsed SpEL node, Spring doesn't expose any way to rewrite a parsed expression.
+ *
+ * @author GraviteeSource Team
+ */
+final class SpelNodes {
+
+    private static final Field CHILDREN;
+    private static final Field PARENT;
+
+    static {
+        try {
+            CHILDREN = SpelNodeImpl.class.getDeclaredField("children");
+            CHILDREN.setAccessible(true);
+            PARENT = SpelNodeImpl.class.getDeclaredField("parent");
+            PARENT.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported SpEL version, unable to access the nodes children", e);
+        }
+    }
+
+    private SpelNodes() {}
+
+    static SpelNodeImpl[] children(SpelNodeImpl node) {
+        try {
+            return (SpelNodeImpl[]) CHILDREN.get(node);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Replaces the child at the given position, the new child is attached to the node.
+     */
+    static void replaceChild(SpelNodeImpl node, int index, SpelNodeImpl child) {
+        children(node)[index] = child;
+        attach(node, child);
+    }
+
+    /**
+     * Replaces all the children of the node, the new children are attached to the node.
+     */
+    static void replaceChildren(SpelNodeImpl node, SpelNodeImpl[] children) {
+        try {
+            CHILDREN.set(node, children);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+
+        for (SpelNodeImpl child : children) {
+            attach(node, child);
+        }
+    }
+
+    private static void attach(SpelNodeImpl parent, SpelNodeImpl child) {
+        try {
+            // Some nodes look at their next sibling through their parent, ex: property auto-grow.
+            PARENT.set(child, parent);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -16,15 +16,17 @@
 package io.gravitee.el.spel;
 
 import static io.gravitee.el.exceptions.ExpressionEvaluationException.buildCause;
+import static io.gravitee.el.spel.SpelExpressionEvaluator.isLiteral;
+import static io.gravitee.el.spel.SpelExpressionEvaluator.toMaybe;
 
+import io.gravitee.el.CompiledTemplate;
 import io.gravitee.el.TemplateContext;
 import io.gravitee.el.TemplateEngine;
 import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.context.SpelBaseTemplateContext;
 import io.gravitee.el.spel.context.SpelTemplateContext;
 import io.reactivex.rxjava3.core.Maybe;
-import io.reactivex.rxjava3.core.Single;
 import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 
 /**
@@ -42,12 +44,22 @@ public class SpelTemplateEngine implements TemplateEngine {
         this.templateContext = new SpelTemplateContext();
     }
 
+    public SpelTemplateEngine(io.gravitee.el.spel.SpelExpressionParser spelExpressionParser, SpelBaseTemplateContext base) {
+        this.spelExpressionParser = spelExpressionParser;
+        this.templateContext = new SpelTemplateContext(base);
+    }
+
     public SpelTemplateEngine(TemplateEngine templateEngine) {
         if (!(templateEngine instanceof SpelTemplateEngine other)) {
             throw new IllegalArgumentException("TemplateEngine must be an instance of SpelTemplateEngine to be duplicated.");
         }
         this.spelExpressionParser = other.spelExpressionParser;
-        this.templateContext = new SpelTemplateContext(other.templateContext);
+        this.templateContext = new SpelTemplateContext(other.spelTemplateContext());
+    }
+
+    protected SpelTemplateEngine(io.gravitee.el.spel.SpelExpressionParser spelExpressionParser, SpelTemplateContext templateContext) {
+        this.spelExpressionParser = spelExpressionParser;
+        this.templateContext = templateContext;
     }
 
     @Override
@@ -57,12 +69,23 @@ public class SpelTemplateEngine implements TemplateEngine {
 
     @Override
     public <T> T evalNow(String expression, Class<T> clazz) {
-        return eval(spelExpressionParser.parseExpression(expression), templateContext.getContext(), clazz);
+        if (isLiteral(expression)) {
+            return convertLiteral(expression, clazz);
+        }
+
+        return spelExpressionParser
+            .getEvaluator()
+            .evalNow(spelExpressionParser.parseAndCacheExpression(expression, templateContext), templateContext, clazz);
     }
 
     @Override
     public <T> Maybe<T> eval(String expression, Class<T> clazz) {
         try {
+            if (isLiteral(expression)) {
+                // Nothing to parse nor evaluate, ex: "https://api.gravitee.io/echo".
+                return toMaybe(convertLiteral(expression, clazz));
+            }
+
             return eval(spelExpressionParser.parseAndCacheExpression(expression, templateContext), templateContext, clazz);
         } catch (ExpressionEvaluationException e) {
             return Maybe.error(e);
@@ -71,49 +94,66 @@ public class SpelTemplateEngine implements TemplateEngine {
         }
     }
 
+    @Override
+    public Maybe<Boolean> evalBoolean(String expression) {
+        try {
+            return spelExpressionParser
+                .getEvaluator()
+                .evalBoolean(spelExpressionParser.parseAndCacheExpression(expression, templateContext), templateContext);
+        } catch (ExpressionEvaluationException e) {
+            return Maybe.error(e);
+        } catch (Exception e) {
+            return Maybe.error(buildCause(expression, e));
+        }
+    }
+
+    @Override
+    public boolean evalBooleanNow(String expression) {
+        return spelExpressionParser
+            .getEvaluator()
+            .evalBooleanNow(spelExpressionParser.parseAndCacheExpression(expression, templateContext), templateContext);
+    }
+
+    @Override
+    public long evalLongNow(String expression) {
+        return spelExpressionParser
+            .getEvaluator()
+            .evalLongNow(spelExpressionParser.parseAndCacheExpression(expression, templateContext), templateContext);
+    }
+
+    @Override
+    public double evalDoubleNow(String expression) {
+        return spelExpressionParser
+            .getEvaluator()
+            .evalDoubleNow(spelExpressionParser.parseAndCacheExpression(expression, templateContext), templateContext);
+    }
+
     @Override
     public TemplateContext getTemplateContext() {
         return templateContext;
     }
 
-    @SuppressWarnings("unchecked")
+    @Override
+    public CompiledTemplate compile(String expression) {
+        return new SpelCompiledTemplate(expression, spelExpressionParser.parseAndCacheExpression(expression, templateContext), spelExpressionParser);
+    }
+
+    /**
+     * @return the context the expressions are evaluated against.
+     */
+    SpelTemplateContext spelTemplateContext() {
+        return templateContext;
+    }
+
     protected <T> Maybe<T> eval(CachedExpression cachedExpression, SpelTemplateContext templateContext, Class<T> clazz) {
-        Expression expression;
-
-        cachedExpression
-            .expressionsToDefer()
-            .forEach((key, exp) ->
-                templateContext.setDeferredVariable(
-                    key,
-                    Maybe.defer(() ->
-                        eval(spelExpressionParser.parseAndCacheExpression("{" + exp + "}", templateContext), templateContext, Object.class)
-                    )
-                )
-            );
-
-        expression = cachedExpression.getExpression();
-
-        return templateContext
-            .evaluationContext(cachedExpression)
-            .flatMapMaybe(evaluationContext -> Maybe.fromCallable(() -> eval(expression, evaluationContext, clazz)))
-            .flatMap(result -> {
-                if (result instanceof Maybe maybeValue) {
-                    // If we end here, the deferred value isn't resolved yet.
-                    return maybeValue;
-                } else if (result instanceof Single singleValue) {
-                    // If we end here, the deferred value isn't resolved yet.
-                    return singleValue.toMaybe();
-                }
-
-                return Maybe.just(result);
-            });
+        return spelExpressionParser.getEvaluator().eval(cachedExpression, templateContext, clazz);
     }
 
     protected <T> T eval(Expression expression, EvaluationContext evaluationContext, Class<T> clazz) {
-        try {
-            return expression.getValue(evaluationContext, clazz);
-        } catch (EvaluationException spelEvaluationException) {
-            throw new ExpressionEvaluationException(expression.getExpressionString(), spelEvaluationException);
-        }
+        return spelExpressionParser.getEvaluator().eval(expression, evaluationContext, clazz);
+    }
+
+    private <T> T convertLiteral(String literal, Class<T> clazz) {
+        return spelExpressionParser.getEvaluator().convert(literal, templateContext.getContext(), clazz);
     }
 }
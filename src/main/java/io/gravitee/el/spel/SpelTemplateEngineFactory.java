@@ -15,8 +15,19 @@
  */
 package io.gravitee.el.spel;
 
+import io.gravitee.el.BaseTemplateContext;
+import io.gravitee.el.PrecompilationReport;
+import io.gravitee.el.PrecompilationResult;
 import io.gravitee.el.TemplateEngine;
 import io.gravitee.el.TemplateEngineFactory;
+import io.gravitee.el.TemplateVariableProvider;
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
+import io.gravitee.el.spel.cache.ExpressionFailureCache;
+import io.gravitee.el.spel.context.SpelBaseTemplateContext;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * @author Christophe LANNOY (chrislannoy.java at gmail.com)
@@ -25,13 +36,93 @@ public class SpelTemplateEngineFactory implements TemplateEngineFactory {
 
     private static final SpelExpressionParser EXPRESSION_PARSER = new SpelExpressionParser();
 
+    private final SpelExpressionParser expressionParser;
+    private final SpelTemplateEnginePool enginePool;
+
+    /**
+     * Creates a factory relying on the shared expression cache.
+     */
+    public SpelTemplateEngineFactory() {
+        this(EXPRESSION_PARSER);
+    }
+
+    /**
+     * Creates a factory with its own expression cache, sized according to the given configuration.
+     *
+     * @param configuration the configuration of the expression cache dedicated to this factory.
+     */
+    public SpelTemplateEngineFactory(ExpressionCacheConfiguration configuration) {
+        this(new SpelExpressionParser(ExpressionCache.create(configuration), new ExpressionFailureCache(configuration)));
+    }
+
+    /**
+     * Creates a factory relying on the given expression cache.
+     *
+     * @param expressionCache the expression cache dedicated to this factory.
+     */
+    public SpelTemplateEngineFactory(ExpressionCache expressionCache) {
+        this(new SpelExpressionParser(expressionCache));
+    }
+
+    protected SpelTemplateEngineFactory(SpelExpressionParser expressionParser) {
+        this.expressionParser = expressionParser;
+        this.enginePool = new SpelTemplateEnginePool(expressionParser, SpelTemplateEnginePool.DEFAULT_MAX_SIZE_PER_THREAD);
+    }
+
     @Override
     public TemplateEngine templateEngine() {
-        return new SpelTemplateEngine(EXPRESSION_PARSER);
+        return new SpelTemplateEngine(expressionParser);
+    }
+
+    /**
+     * Gets an engine from the pool of the current thread, at most {@value SpelTemplateEnginePool#DEFAULT_MAX_SIZE_PER_THREAD} released engines are
+     * kept per thread.
+     */
+    @Override
+    public TemplateEngine pooledTemplateEngine() {
+        return enginePool.acquire();
+    }
+
+    @Override
+    public TemplateEngine templateEngine(BaseTemplateContext base) {
+        if (base instanceof SpelBaseTemplateContext spelBase) {
+            return new SpelTemplateEngine(expressionParser, spelBase);
+        }
+
+        return TemplateEngineFactory.super.templateEngine(base);
+    }
+
+    @Override
+    public BaseTemplateContext baseTemplateContext(Collection<? extends TemplateVariableProvider> providers) {
+        return SpelBaseTemplateContext.of(providers);
     }
 
     @Override
     public TemplateEngine fromTemplateEngine(TemplateEngine templateEngine) {
         return new SpelTemplateEngine(templateEngine);
     }
+
+    /**
+     * Parses and analyses the expressions in parallel on the common fork-join pool and loads them in the expression cache.
+     * Expressions are analysed without any deferred function holder, the ones referencing a deferred function holder are analysed again on their first
+     * evaluation with it. This analysis is kept along with the precompiled entry.
+     *
+     * @param expressions the expressions to precompile.
+     * @return the report giving the outcome of each expression.
+     */
+    @Override
+    public PrecompilationReport precompile(Collection<String> expressions) {
+        return new PrecompilationReport(expressions.parallelStream().distinct().map(this::precompile).toList());
+    }
+
+    private PrecompilationResult precompile(String expression) {
+        try {
+            expressionParser.parseAndCacheExpression(expression, Collections.emptySet());
+            return PrecompilationResult.compiled(expression);
+        } catch (ExpressionEvaluationException e) {
+            return PrecompilationResult.failed(expression, e);
+        } catch (Exception e) {
+            return PrecompilationResult.failed(expression, new ExpressionEvaluationException(expression, e));
+        }
+    }
 }
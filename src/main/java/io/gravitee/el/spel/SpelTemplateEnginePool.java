@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pools of {@link SpelTemplateEngine} local to each thread, ex: a Vert.x event loop, see {@link io.gravitee.el.TemplateEngine#pooledTemplateEngine()}.
+ * Being local to a thread, acquiring and releasing an engine only requires to publish the new generation of its context. An engine released by another thread than the
+ * one it has been acquired on is dropped.
+ * <p/>
+ * Only the contexts are recycled: each acquisition still allocates a {@link PooledSpelTemplateEngine} and its context handle, stamped with the
+ * generation of the context so that a reference kept after the release can't use the context once acquired again.
+ *
+ * @author GraviteeSource Team
+ */
+final class SpelTemplateEnginePool {
+
+    static final int DEFAULT_MAX_SIZE_PER_THREAD = 32;
+
+    private final SpelExpressionParser expressionParser;
+    private final int maxSizePerThread;
+    private final ThreadLocal<ArrayDeque<Entry>> entries = ThreadLocal.withInitial(ArrayDeque::new);
+
+    SpelTemplateEnginePool(SpelExpressionParser expressionParser, int maxSizePerThread) {
+        this.expressionParser = expressionParser;
+        this.maxSizePerThread = maxSizePerThread;
+    }
+
+    PooledSpelTemplateEngine acquire() {
+        Entry entry = entries.get().pollLast();
+
+        if (entry == null) {
+            entry = new Entry(Thread.currentThread());
+        }
+
+        return new PooledSpelTemplateEngine(expressionParser, this, entry);
+    }
+
+    void release(Entry entry) {
+        // Invalidates the engine and the context handed out for this acquisition, even when the entry is dropped.
+        entry.generation.incrementAndGet();
+
+        if (entry.owner != Thread.currentThread()) {
+            return;
+        }
+
+        final ArrayDeque<Entry> pool = entries.get();
+
+        if (pool.size() < maxSizePerThread) {
+            entry.templateContext.reset();
+            pool.addLast(entry);
+        }
+    }
+
+    /**
+     * @return the number of engines available for the current thread.
+     */
+    int available() {
+        return entries.get().size();
+    }
+
+    /**
+     * Context recycled by the pool, along with the number of times it has been released.
+     */
+    static final class Entry {
+
+        private final SpelTemplateContext templateContext = new SpelTemplateContext();
+        private final Thread owner;
+        // Written by the thread releasing the engine, which may not be the one holding it, ex: a reactive callback.
+        private final AtomicInteger generation = new AtomicInteger();
+
+        private Entry(Thread owner) {
+            this.owner = owner;
+        }
+
+        SpelTemplateContext getTemplateContext() {
+            return templateContext;
+        }
+
+        int getGeneration() {
+            return generation.get();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static io.gravitee.el.spel.SpelExpressionParser.EXPRESSION_PREFIX;
+
+/**
+ * Single pass scanner locating the expression segments of a template.
+ * <p/>
+ * An expression segment starts with <code>{</code>, optionally followed by spaces, then <code>#</code>, <code>T</code> or <code>(</code> and ends with the
+ * first <code>}</code> that doesn't close a nested <code>{...}</code> (only one level of nesting is supported, ex: <code>{#jsonEscape({'a', 'b'})}</code>).
+ * Any other <code>{</code> is considered as literal text.
+ * <p/>
+ * Each character is visited a bounded number of times, the scanning time is linear with the size of the template, whatever the number of braces.
+ *
+ * @author GraviteeSource Team
+ */
+public final class TemplateScanner {
+
+    private TemplateScanner() {}
+
+    /**
+     * Rewrites the prefix of each expression segment (<code>{#</code>, <code>{T</code>, <code>{(</code>, possibly with spaces after the brace) into a
+     * prefix understood by the {@link TemplateParserContext} (<code>{##</code>, <code>{#T</code>, <code>{#(</code>).
+     *
+     * @param template the template to rewrite.
+     * @return the rewritten template, or the very same instance when the template doesn't contain any expression segment.
+     */
+    public static String rewrite(String template) {
+        int open = template.indexOf('{');
+
+        if (open < 0) {
+            return template;
+        }
+
+        final int length = template.length();
+        StringBuilder builder = null;
+        int copied = 0;
+
+        while (open >= 0) {
+            final int start = expressionStart(template, open);
+            final int end = start < 0 ? -1 : segmentEnd(template, start);
+
+            if (end < 0) {
+                open = template.indexOf('{', open + 1);
+                continue;
+            }
+
+            if (builder == null) {
+                builder = new StringBuilder(length + 16);
+            }
+            builder.append(template, copied, open).append(EXPRESSION_PREFIX).append(template, start, end + 1);
+            copied = end + 1;
+            open = template.indexOf('{', copied);
+        }
+
+        if (builder == null) {
+            return template;
+        }
+
+        return builder.append(template, copied, length).toString();
+    }
+
+    /**
+     * Returns the position of the expression start character (<code>#</code>, <code>T</code> or <code>(</code>) following the opening brace.
+     *
+     * @param template the template.
+     * @param open the position of the opening brace.
+     * @return the position of the expression start character or <code>-1</code> if the brace doesn't open an expression segment.
+     */
+    static int expressionStart(String template, int open) {
+        final int length = template.length();
+        int start = open + 1;
+
+        while (start < length && template.charAt(start) == ' ') {
+            start++;
+        }
+
+        if (start == length) {
+            return -1;
+        }
+
+        final char c = template.charAt(start);
+        return c == '#' || c == 'T' || c == '(' ? start : -1;
+    }
+
+    /**
+     * Returns the position of the brace closing the expression segment.
+     *
+     * @param template the template.
+     * @param from the position to start scanning from, inside the segment.
+     * @return the position of the closing brace or <code>-1</code> if the segment is not properly closed.
+     */
+    static int segmentEnd(String template, int from) {
+        final int length = template.length();
+        int pos = from;
+
+        while (pos < length) {
+            final char c = template.charAt(pos);
+
+            if (c == '}') {
+                return pos;
+            } else if (c == '{') {
+                pos++;
+                while (pos < length && template.charAt(pos) != '{' && template.charAt(pos) != '}') {
+                    pos++;
+                }
+
+                if (pos == length || template.charAt(pos) == '{') {
+                    return -1;
+                }
+            }
+            pos++;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.gravitee.el.DeferredValueStore;
+import io.gravitee.el.spel.context.SingleFlight;
+import io.reactivex.rxjava3.core.Maybe;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+
+/**
+ * Cache of deferred values shared by all the template contexts, for values that rarely change but are costly to fetch (ex: a remote dictionary).
+ * A deferred variable opts in by being registered with a cache key, see {@link io.gravitee.el.DeferredVariableOptions#getCacheKey()}.
+ * <p/>
+ * Concurrent lookups of a missing value are coalesced. Once cached, a value is served until it expires, it is fetched again in the background when
+ * it gets older than {@link DeferredValueCacheConfiguration#getRefreshAheadInMs()} so that frequently used values never expire on the request
+ * path. A failed or empty refresh keeps the current value and is retried after a quarter of the time between the refresh and the expiration.
+ * Empty and failed lookups can also be remembered, see {@link DeferredValueCacheConfiguration#getNegativeTtlInMs()}.
+ *
+ * @author GraviteeSource Team
+ */
+public class DeferredValueCache implements DeferredValueStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeferredValueCache.class);
+
+    private static volatile DeferredValueCache shared = new DeferredValueCache(DeferredValueCacheConfiguration.defaults());
+
+    private final Cache<String, Entry> cache;
+    private final Ticker ticker;
+    private final long refreshAheadInNanos;
+    private final long refreshRetryInNanos;
+    private final long negativeTtlInNanos;
+    private final SingleFlight loads;
+    private final DeferredValueCacheMetrics metrics = new DeferredValueCacheMetrics();
+
+    public DeferredValueCache(DeferredValueCacheConfiguration configuration) {
+        this(configuration, Ticker.systemTicker());
+    }
+
+    DeferredValueCache(DeferredValueCacheConfiguration configuration, Ticker ticker) {
+        final long ttlInNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getTtlInMs());
+
+        this.ticker = ticker;
+        this.refreshAheadInNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getRefreshAheadInMs());
+        // A failed or empty refresh is retried a few times before the value expires, without hitting the lookup on each access.
+        this.refreshRetryInNanos = Math.max(1, (ttlInNanos - refreshAheadInNanos) / 4);
+        this.negativeTtlInNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getNegativeTtlInMs());
+        this.loads = new SingleFlight((int) Math.min(configuration.getMaxSize(), Integer.MAX_VALUE));
+        this.cache =
+            Caffeine
+                .newBuilder()
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .maximumSize(configuration.getMaxSize())
+                .expireAfter(
+                    new Expiry<String, Entry>() {
+                        @Override
+                        public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                            return entry.negative ? negativeTtlInNanos : ttlInNanos;
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                            return expireAfterCreate(key, entry, currentTime);
+                        }
+
+                        @Override
+                        public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    }
+                )
+                .build();
+    }
+
+    /**
+     * @return the cache used by the deferred variables that have not been given their own cache.
+     */
+    public static DeferredValueCache shared() {
+        return shared;
+    }
+
+    /**
+     * Initialize the shared deferred value cache from the environment configuration. Values already cached are discarded.
+     *
+     * @param environment an optional environment, if <code>null</code>, the default cache configuration is applied.
+     */
+    public static void initialize(@Nullable Environment environment) {
+        shared = new DeferredValueCache(DeferredValueCacheConfiguration.from(environment));
+    }
+
+    @Override
+    public <T> Maybe<T> maybe(String key, Maybe<T> lookup) {
+        return Maybe.defer(() -> {
+            final Entry entry = cache.getIfPresent(key);
+
+            if (entry != null) {
+                metrics.recordHit();
+                refreshAhead(key, entry, lookup);
+                return entry.toMaybe();
+            }
+
+            metrics.recordMiss();
+            return loads.maybe(key, () -> load(key, lookup));
+        });
+    }
+
+    @Override
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public DeferredValueCacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    private <T> Maybe<T> load(String key, Maybe<T> lookup) {
+        return lookup
+            .doOnSuccess(value -> cache.put(key, new Entry(value, null, ticker.read())))
+            .doOnComplete(() -> putNegative(key, new Entry(null, null, ticker.read())))
+            .doOnError(error -> putNegative(key, new Entry(null, error, ticker.read())));
+    }
+
+    private void putNegative(String key, Entry entry) {
+        if (negativeTtlInNanos > 0) {
+            cache.put(key, entry);
+        }
+    }
+
+    private <T> void refreshAhead(String key, Entry entry, Maybe<T> lookup) {
+        if (
+            refreshAheadInNanos <= 0 ||
+            entry.negative ||
+            ticker.read() - entry.fetchedAt < refreshAheadInNanos ||
+            ticker.read() < entry.retryAt ||
+            !entry.refreshing.compareAndSet(false, true)
+        ) {
+            return;
+        }
+
+        // The current value keeps being served until the new one is fetched, a failed or empty refresh leaves it until it expires.
+        lookup
+            .doFinally(() -> entry.refreshing.set(false))
+            .subscribe(
+                value -> {
+                    cache.put(key, new Entry(value, null, ticker.read()));
+                    metrics.recordRefresh();
+                },
+                error -> {
+                    LOGGER.debug("Unable to refresh the deferred value {}", key, error);
+                    entry.retryAt = ticker.read() + refreshRetryInNanos;
+                },
+                () -> entry.retryAt = ticker.read() + refreshRetryInNanos
+            );
+    }
+
+    private static final class Entry {
+
+        private final Object value;
+        private final Throwable error;
+        private final long fetchedAt;
+        private final boolean negative;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long retryAt = Long.MIN_VALUE;
+
+        private Entry(Object value, Throwable error, long fetchedAt) {
+            this.value = value;
+            this.error = error;
+            this.fetchedAt = fetchedAt;
+            this.negative = value == null;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> Maybe<T> toMaybe() {
+            if (error != null) {
+                return Maybe.error(error);
+            }
+
+            return value == null ? Maybe.empty() : Maybe.just((T) value);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+
+/**
+ * Configuration of a {@link DeferredValueCache}.
+ * Can be built programmatically or loaded from the node configuration using {@link #from(Environment)}.
+ *
+ * @author GraviteeSource Team
+ */
+@Getter
+@Builder
+public class DeferredValueCacheConfiguration {
+
+    public static final String EL_DEFERRED_CACHE_MAX_SIZE_KEY = "el.cache.deferred.maxSize";
+    public static final String EL_DEFERRED_CACHE_TTL_KEY = "el.cache.deferred.ttl";
+    public static final String EL_DEFERRED_CACHE_REFRESH_AHEAD_KEY = "el.cache.deferred.refreshAhead";
+    public static final String EL_DEFERRED_CACHE_NEGATIVE_TTL_KEY = "el.cache.deferred.negativeTtl";
+
+    public static final long DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 60000;
+    public static final long DEFAULT_REFRESH_AHEAD_MILLIS = 0;
+    public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 0;
+
+    /**
+     * Maximum number of deferred values kept in the cache.
+     */
+    @Builder.Default
+    private final long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Time to live of a cached value in milliseconds, counted from the time it has been fetched.
+     */
+    @Builder.Default
+    private final long ttlInMs = DEFAULT_TTL_MILLIS;
+
+    /**
+     * Age, in milliseconds, from which a cached value is fetched again in the background while still being served, <code>0</code> disables it.
+     * It must be lower than {@link #ttlInMs} so that frequently used values are refreshed before they expire, the configuration is rejected otherwise.
+     */
+    @Builder.Default
+    private final long refreshAheadInMs = DEFAULT_REFRESH_AHEAD_MILLIS;
+
+    /**
+     * Time, in milliseconds, during which an empty or failed lookup is remembered, <code>0</code> disables it.
+     */
+    @Builder.Default
+    private final long negativeTtlInMs = DEFAULT_NEGATIVE_TTL_MILLIS;
+
+    DeferredValueCacheConfiguration(long maxSize, long ttlInMs, long refreshAheadInMs, long negativeTtlInMs) {
+        if (refreshAheadInMs > 0 && refreshAheadInMs >= ttlInMs) {
+            throw new IllegalArgumentException(
+                String.format("Deferred cache refresh ahead (%d ms) must be lower than its time to live (%d ms)", refreshAheadInMs, ttlInMs)
+            );
+        }
+
+        this.maxSize = maxSize;
+        this.ttlInMs = ttlInMs;
+        this.refreshAheadInMs = refreshAheadInMs;
+        this.negativeTtlInMs = negativeTtlInMs;
+    }
+
+    public static DeferredValueCacheConfiguration defaults() {
+        return DeferredValueCacheConfiguration.builder().build();
+    }
+
+    /**
+     * Loads the deferred value cache configuration from the environment, falling back to the defaults for any missing property.
+     *
+     * @param environment an optional environment, if <code>null</code>, the default configuration is returned.
+     * @return the deferred value cache configuration.
+     */
+    public static DeferredValueCacheConfiguration from(@Nullable Environment environment) {
+        if (environment == null) {
+            return defaults();
+        }
+
+        return DeferredValueCacheConfiguration
+            .builder()
+            .maxSize(environment.getProperty(EL_DEFERRED_CACHE_MAX_SIZE_KEY, Long.class, DEFAULT_MAX_SIZE))
+            .ttlInMs(environment.getProperty(EL_DEFERRED_CACHE_TTL_KEY, Long.class, DEFAULT_TTL_MILLIS))
+            .refreshAheadInMs(environment.getProperty(EL_DEFERRED_CACHE_REFRESH_AHEAD_KEY, Long.class, DEFAULT_REFRESH_AHEAD_MILLIS))
+            .negativeTtlInMs(environment.getProperty(EL_DEFERRED_CACHE_NEGATIVE_TTL_KEY, Long.class, DEFAULT_NEGATIVE_TTL_MILLIS))
+            .build();
+    }
+}
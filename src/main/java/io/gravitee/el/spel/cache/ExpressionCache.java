@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import io.gravitee.el.spel.CachedExpression;
+
+/**
+ * Cache of parsed expressions used by the {@link io.gravitee.el.spel.SpelExpressionParser}.
+ *
+ * @author GraviteeSource Team
+ */
+public interface ExpressionCache {
+    /**
+     * Creates a new {@link ExpressionCache} according to the specified configuration.
+     *
+     * @param configuration the cache configuration.
+     * @return the newly created {@link ExpressionCache}.
+     */
+    static ExpressionCache create(ExpressionCacheConfiguration configuration) {
+        return switch (configuration.getType()) {
+            case TINY_LFU -> new TinyLfuExpressionCache(configuration);
+            case IN_MEMORY -> new InMemoryExpressionCache("el", configuration);
+        };
+    }
+
+    /**
+     * Returns the {@link CachedExpression} associated to the given expression or <code>null</code> if it is not cached.
+     *
+     * @param expression the raw expression.
+     * @return the cached expression or <code>null</code>.
+     */
+    CachedExpression get(String expression);
+
+    /**
+     * Caches the {@link CachedExpression} for the given expression.
+     *
+     * @param expression the raw expression.
+     * @param cachedExpression the parsed expression to cache.
+     */
+    void put(String expression, CachedExpression cachedExpression);
+
+    /**
+     * Removes the given expression from the cache.
+     *
+     * @param expression the raw expression.
+     */
+    void evict(String expression);
+
+    /**
+     * Removes all the cached expressions.
+     */
+    void clear();
+
+    /**
+     * @return the number of expressions currently cached.
+     */
+    long size();
+
+    /**
+     * @return the statistics of the cache since its creation.
+     */
+    ExpressionCacheStats stats();
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+
+/**
+ * Configuration of an {@link ExpressionCache}.
+ * Can be built programmatically or loaded from the node configuration using {@link #from(Environment)}.
+ *
+ * @author GraviteeSource Team
+ */
+@Getter
+@Builder
+public class ExpressionCacheConfiguration {
+
+    public static final String EL_CACHE_MAX_SIZE_KEY = "el.cache.expressions.maxSize";
+    public static final String EL_CACHE_TTL_KEY = "el.cache.expressions.ttl";
+    public static final String EL_CACHE_EVICTION_KEY = "el.cache.expressions.eviction";
+    public static final String EL_CACHE_TYPE_KEY = "el.cache.expressions.type";
+    public static final String EL_CACHE_FAILURE_MAX_SIZE_KEY = "el.cache.expressions.failures.maxSize";
+    public static final String EL_CACHE_FAILURE_TTL_KEY = "el.cache.expressions.failures.ttl";
+
+    public static final long DEFAULT_MAX_SIZE = 20000;
+    public static final long DEFAULT_TTL_MILLIS = 3600000;
+    public static final ExpressionCacheEvictionPolicy DEFAULT_EVICTION_POLICY = ExpressionCacheEvictionPolicy.IDLE;
+    public static final ExpressionCacheType DEFAULT_TYPE = ExpressionCacheType.TINY_LFU;
+    public static final long DEFAULT_FAILURE_MAX_SIZE = 1000;
+    public static final long DEFAULT_FAILURE_TTL_MILLIS = 60000;
+
+    /**
+     * Maximum number of parsed expressions kept in the cache.
+     */
+    @Builder.Default
+    private final long maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * Time to live of a cached expression in milliseconds, see {@link #evictionPolicy}.
+     */
+    @Builder.Default
+    private final long ttlInMs = DEFAULT_TTL_MILLIS;
+
+    /**
+     * How the {@link #ttlInMs} is applied to the cached expressions.
+     */
+    @Builder.Default
+    private final ExpressionCacheEvictionPolicy evictionPolicy = DEFAULT_EVICTION_POLICY;
+
+    /**
+     * Implementation of the cache.
+     */
+    @Builder.Default
+    private final ExpressionCacheType type = DEFAULT_TYPE;
+
+    /**
+     * Maximum number of expressions that have failed to parse kept in the negative cache, <code>0</code> disables it.
+     */
+    @Builder.Default
+    private final long failureMaxSize = DEFAULT_FAILURE_MAX_SIZE;
+
+    /**
+     * Time, in milliseconds, during which a parsing failure is remembered before the expression gets parsed again.
+     */
+    @Builder.Default
+    private final long failureTtlInMs = DEFAULT_FAILURE_TTL_MILLIS;
+
+    public static ExpressionCacheConfiguration defaults() {
+        return ExpressionCacheConfiguration.builder().build();
+    }
+
+    /**
+     * Loads the expression cache configuration from the environment, falling back to the defaults for any missing property.
+     *
+     * @param environment an optional environment, if <code>null</code>, the default configuration is returned.
+     * @return the expression cache configuration.
+     */
+    public static ExpressionCacheConfiguration from(@Nullable Environment environment) {
+        if (environment == null) {
+            return defaults();
+        }
+
+        return ExpressionCacheConfiguration
+            .builder()
+            .maxSize(environment.getProperty(EL_CACHE_MAX_SIZE_KEY, Long.class, DEFAULT_MAX_SIZE))
+            .ttlInMs(environment.getProperty(EL_CACHE_TTL_KEY, Long.class, DEFAULT_TTL_MILLIS))
+            .evictionPolicy(
+                ExpressionCacheEvictionPolicy.valueOf(
+                    environment.getProperty(EL_CACHE_EVICTION_KEY, DEFAULT_EVICTION_POLICY.name()).toUpperCase()
+                )
+            )
+            .type(ExpressionCacheType.valueOf(toEnumName(environment.getProperty(EL_CACHE_TYPE_KEY, DEFAULT_TYPE.name()))))
+            .failureMaxSize(environment.getProperty(EL_CACHE_FAILURE_MAX_SIZE_KEY, Long.class, DEFAULT_FAILURE_MAX_SIZE))
+            .failureTtlInMs(environment.getProperty(EL_CACHE_FAILURE_TTL_KEY, Long.class, DEFAULT_FAILURE_TTL_MILLIS))
+            .build();
+    }
+
+    private static String toEnumName(String value) {
+        // Ex: 'tiny-lfu' -> 'TINY_LFU'
+        return value.toUpperCase().replace('-', '_');
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+/**
+ * Defines how the time to live of the expression cache is applied to the cached entries.
+ *
+ * @author GraviteeSource Team
+ */
+public enum ExpressionCacheEvictionPolicy {
+    /**
+     * Entries are evicted when they have not been accessed during the configured time to live.
+     */
+    IDLE,
+
+    /**
+     * Entries are evicted once the configured time to live has elapsed since their creation.
+     */
+    WRITE,
+
+    /**
+     * Entries are only evicted when the maximum size of the cache is reached.
+     */
+    SIZE,
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters recorded by a {@link io.gravitee.el.spel.SpelExpressionParser} around its {@link ExpressionCache} lookups.
+ *
+ * @author GraviteeSource Team
+ */
+public class ExpressionCacheMetrics {
+
+    private final LongAdder canonicalizedHits = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder failureHits = new LongAdder();
+
+    public void recordCanonicalizedHit() {
+        canonicalizedHits.increment();
+    }
+
+    public void recordParseFailure() {
+        parseFailures.increment();
+    }
+
+    public void recordFailureHit() {
+        failureHits.increment();
+    }
+
+    /**
+     * @return the number of spellings of an expression (e.g. extra whitespaces or double quotes) that have been merged into an already cached
+     * equivalent expression. A merged spelling is cached as an extra key, it is counted again only if it gets evicted.
+     */
+    public long getCanonicalizedHitCount() {
+        return canonicalizedHits.sum();
+    }
+
+    /**
+     * @return the number of expressions that have actually been parsed and failed.
+     */
+    public long getParseFailureCount() {
+        return parseFailures.sum();
+    }
+
+    /**
+     * @return the number of lookups that have been answered by a previously recorded parsing failure, without parsing the expression again.
+     */
+    public long getFailureHitCount() {
+        return failureHits.sum();
+    }
+}
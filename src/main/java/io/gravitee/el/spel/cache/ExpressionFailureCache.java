@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import java.time.Duration;
+
+/**
+ * Negative cache remembering the expressions that have failed to parse.
+ * <p/>
+ * An invalid expression always fails the same way, remembering the failure avoids parsing it again on every evaluation.
+ * Failures are kept for a bounded time ({@link ExpressionCacheConfiguration#getFailureTtlInMs()}) and the same exception instance is returned
+ * until it expires.
+ *
+ * @author GraviteeSource Team
+ */
+public class ExpressionFailureCache {
+
+    private final Cache<String, ExpressionEvaluationException> cache;
+
+    public ExpressionFailureCache(ExpressionCacheConfiguration configuration) {
+        this(configuration, Ticker.systemTicker());
+    }
+
+    ExpressionFailureCache(ExpressionCacheConfiguration configuration, Ticker ticker) {
+        this.cache =
+            Caffeine
+                .newBuilder()
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .maximumSize(configuration.getFailureMaxSize())
+                .expireAfterWrite(Duration.ofMillis(configuration.getFailureTtlInMs()))
+                .build();
+    }
+
+    /**
+     * Returns the failure previously recorded for the given expression or <code>null</code> if there is none.
+     *
+     * @param expression the raw expression.
+     * @return the parsing failure or <code>null</code>.
+     */
+    public ExpressionEvaluationException get(String expression) {
+        return cache.getIfPresent(expression);
+    }
+
+    /**
+     * Records the failure for the given expression.
+     *
+     * @param expression the raw expression.
+     * @param failure the exception to return for the expression until it expires.
+     */
+    public void put(String expression, ExpressionEvaluationException failure) {
+        cache.put(expression, failure);
+    }
+
+    /**
+     * Removes all the recorded failures.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the number of failures currently recorded.
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
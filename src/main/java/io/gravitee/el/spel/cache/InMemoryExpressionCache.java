@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import io.gravitee.el.spel.CachedExpression;
+import io.gravitee.node.api.cache.Cache;
+import io.gravitee.node.api.cache.CacheConfiguration;
+import io.gravitee.node.api.cache.CacheListener;
+import io.gravitee.node.plugin.cache.common.InMemoryCache;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ExpressionCache} backed by a node {@link InMemoryCache}.
+ *
+ * @author GraviteeSource Team
+ */
+public class InMemoryExpressionCache implements ExpressionCache {
+
+    private final Cache<String, CachedExpression> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public InMemoryExpressionCache(String name, ExpressionCacheConfiguration configuration) {
+        final CacheConfiguration.CacheConfigurationBuilder builder = CacheConfiguration.builder().maxSize(configuration.getMaxSize());
+
+        switch (configuration.getEvictionPolicy()) {
+            case IDLE -> builder.timeToIdleInMs(configuration.getTtlInMs());
+            case WRITE -> builder.timeToLiveInMs(configuration.getTtlInMs());
+            case SIZE -> {
+                // Size based eviction only.
+            }
+        }
+
+        this.cache = new InMemoryCache<>(name, builder.build());
+        this.cache.addCacheListener(
+                new CacheListener<>() {
+                    @Override
+                    public void onEntryEvicted(String key, CachedExpression value) {
+                        evictionCount.increment();
+                    }
+
+                    @Override
+                    public void onEntryExpired(String key, CachedExpression value) {
+                        evictionCount.increment();
+                    }
+                }
+            );
+    }
+
+    @Override
+    public CachedExpression get(String expression) {
+        final CachedExpression cachedExpression = cache.get(expression);
+
+        if (cachedExpression != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+
+        return cachedExpression;
+    }
+
+    @Override
+    public void put(String expression, CachedExpression cachedExpression) {
+        cache.put(expression, cachedExpression);
+    }
+
+    @Override
+    public void evict(String expression) {
+        cache.evict(expression);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public ExpressionCacheStats stats() {
+        return new ExpressionCacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+    }
+}
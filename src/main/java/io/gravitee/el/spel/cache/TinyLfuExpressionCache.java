@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.gravitee.el.spel.CachedExpression;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link ExpressionCache} relying on the Caffeine W-TinyLFU policy.
+ * <p/>
+ * The access frequency of every expression is tracked in a compact sketch, including for expressions that are no longer cached.
+ * When the cache is full, a newly parsed expression is only admitted if it has been requested more often than the eviction candidate.
+ * A burst of one-off expressions (e.g. templates built per request) is then rejected instead of pushing out the expressions evaluated on every call.
+ * Reads are lock-free, the frequency bookkeeping being buffered and replayed asynchronously.
+ *
+ * @author GraviteeSource Team
+ */
+public class TinyLfuExpressionCache implements ExpressionCache {
+
+    private final Cache<String, CachedExpression> cache;
+
+    public TinyLfuExpressionCache(ExpressionCacheConfiguration configuration) {
+        this(configuration, ForkJoinPool.commonPool());
+    }
+
+    TinyLfuExpressionCache(ExpressionCacheConfiguration configuration, Executor maintenanceExecutor) {
+        final Caffeine<Object, Object> builder = Caffeine
+            .newBuilder()
+            .executor(maintenanceExecutor)
+            .maximumSize(configuration.getMaxSize())
+            .recordStats();
+
+        switch (configuration.getEvictionPolicy()) {
+            case IDLE -> builder.expireAfterAccess(Duration.ofMillis(configuration.getTtlInMs()));
+            case WRITE -> builder.expireAfterWrite(Duration.ofMillis(configuration.getTtlInMs()));
+            case SIZE -> {
+                // Size based eviction only.
+            }
+        }
+
+        this.cache = builder.build();
+    }
+
+    @Override
+    public CachedExpression get(String expression) {
+        return cache.getIfPresent(expression);
+    }
+
+    @Override
+    public void put(String expression, CachedExpression cachedExpression) {
+        cache.put(expression, cachedExpression);
+    }
+
+    @Override
+    public void evict(String expression) {
+        cache.invalidate(expression);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public ExpressionCacheStats stats() {
+        final CacheStats stats = cache.stats();
+        return new ExpressionCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+}
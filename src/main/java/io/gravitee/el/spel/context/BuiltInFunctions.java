@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import io.gravitee.el.spel.function.json.JsonPathFunction;
+import io.gravitee.el.spel.function.json.escape.JsonEscapeFunction;
+import io.gravitee.el.spel.function.xml.XPathFunction;
+import io.gravitee.el.spel.function.xml.escape.XmlEscapeFunction;
+import java.lang.reflect.Method;
+import java.util.Map;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * Functions available to all the expressions, ex: <code>{#jsonPath(#request.content, '$.name')}</code>.
+ * They are looked up before the variables of the context (see {@link SecuredEvaluationContext#lookupVariable(String)}): registering them in each
+ * context is not needed, and a variable can't hide them.
+ *
+ * @author GraviteeSource Team
+ */
+final class BuiltInFunctions {
+
+    static final Method JSON_PATH = BeanUtils.resolveSignature("evaluate", JsonPathFunction.class);
+    static final Method XPATH = BeanUtils.resolveSignature("evaluate", XPathFunction.class);
+    static final Method XML_ESCAPE = BeanUtils.resolveSignature("evaluate", XmlEscapeFunction.class);
+    static final Method JSON_ESCAPE = BeanUtils.resolveSignature("evaluate", JsonEscapeFunction.class);
+
+    private static final Map<String, Method> FUNCTIONS = Map.of(
+        "jsonPath",
+        JSON_PATH,
+        "xpath",
+        XPATH,
+        "xmlEscape",
+        XML_ESCAPE,
+        "jsonEscape",
+        JSON_ESCAPE
+    );
+
+    private BuiltInFunctions() {}
+
+    /**
+     * @param name the name of the function.
+     * @return the static method implementing the function, <code>null</code> if there is no built-in function with this name.
+     */
+    static Method get(String name) {
+        return FUNCTIONS.get(name);
+    }
+}
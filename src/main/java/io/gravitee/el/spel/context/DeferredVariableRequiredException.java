@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import java.util.List;
+
+/**
+ * Signals that the evaluation reached a conditional branch requiring deferred variables that have not been resolved yet, see
+ * {@link StagedEvaluationContext}. The evaluation has to be started again once they are resolved.
+ *
+ * @author GraviteeSource Team
+ */
+public class DeferredVariableRequiredException extends RuntimeException {
+
+    private final transient List<String> names;
+
+    public DeferredVariableRequiredException(List<String> names) {
+        // Used for the control flow only, no need for a stack trace.
+        super("Deferred variables " + names + " must be resolved", null, false, false);
+        this.names = names;
+    }
+
+    /**
+     * @return the names of the deferred variables to resolve.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodExecutor;
+import org.springframework.expression.TypedValue;
+
+/**
+ * Executes a {@link io.gravitee.el.annotations.Memoizable} method of a {@link DeferredFunctionHolder}, reusing the result of the same call already
+ * made against the template context. The reactive result is cached so that identical calls share a single subscription.
+ *
+ * @author GraviteeSource Team
+ */
+final class MemoizedMethodExecutor implements MethodExecutor {
+
+    private final MethodExecutor delegate;
+    private final Method method;
+    private final boolean shared;
+
+    MemoizedMethodExecutor(MethodExecutor delegate, Method method, boolean shared) {
+        this.delegate = delegate;
+        this.method = method;
+        this.shared = shared;
+    }
+
+    @Override
+    public TypedValue execute(EvaluationContext context, Object target, Object... arguments) throws AccessException {
+        final Map<Object, TypedValue> calls = deferredCalls(context);
+
+        if (calls == null) {
+            return delegate.execute(context, target, arguments);
+        }
+
+        final List<Object> argumentList = Arrays.asList(arguments.clone());
+
+        try {
+            // Identical calls made concurrently by the same evaluation share the same cached result.
+            return calls.computeIfAbsent(new Call(target, method, argumentList), call -> execute(context, target, arguments, argumentList));
+        } catch (ExecutionFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    private TypedValue execute(EvaluationContext context, Object target, Object[] arguments, List<Object> argumentList) {
+        Object value;
+
+        try {
+            value = delegate.execute(context, target, arguments).getValue();
+        } catch (AccessException e) {
+            throw new ExecutionFailure(e);
+        }
+
+        if (shared) {
+            value = coalesce(new SharedCall(target.getClass(), method, argumentList), value);
+        }
+
+        return new TypedValue(cache(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object coalesce(SharedCall call, Object value) {
+        if (value instanceof Maybe<?> maybe) {
+            return SingleFlight.shared().maybe(call, () -> (Maybe<Object>) maybe);
+        } else if (value instanceof Single<?> single) {
+            return SingleFlight.shared().single(call, () -> (Single<Object>) single);
+        }
+
+        return value;
+    }
+
+    private static Map<Object, TypedValue> deferredCalls(EvaluationContext context) {
+        if (context instanceof StagedEvaluationContext stagedEvaluationContext) {
+            return deferredCalls(stagedEvaluationContext.getDelegate());
+        } else if (context instanceof SecuredEvaluationContext securedEvaluationContext) {
+            return securedEvaluationContext.getDeferredCalls();
+        }
+
+        return null;
+    }
+
+    private static Object cache(Object value) {
+        if (value instanceof Maybe<?> maybe) {
+            return maybe.cache();
+        } else if (value instanceof Single<?> single) {
+            return single.cache();
+        } else if (value instanceof Completable completable) {
+            return completable.cache();
+        }
+
+        return value;
+    }
+
+    // The holder is compared by identity, two holders registered under different names don't share their calls.
+    private record Call(Object target, Method method, List<Object> arguments) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Call other && target == other.target && method.equals(other.method) && arguments.equals(other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(target) + method.hashCode()) + arguments.hashCode();
+        }
+    }
+
+    // Carries the failure of the call out of the map computation.
+    private static final class ExecutionFailure extends RuntimeException {
+
+        private ExecutionFailure(AccessException cause) {
+            super(null, cause, false, false);
+        }
+
+        @Override
+        public synchronized AccessException getCause() {
+            return (AccessException) super.getCause();
+        }
+    }
+
+    // Holders of different template contexts are different instances, calls are shared by holder type.
+    private record SharedCall(Class<?> type, Method method, List<Object> arguments) {}
+}
@@ -15,7 +15,9 @@
  */
 package io.gravitee.el.spel.context;
 
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.expression.*;
 import org.springframework.expression.spel.support.*;
@@ -53,11 +55,22 @@ public class SecuredEvaluationContext implements EvaluationContext {
 
     protected TypedValue rootObject;
 
-    private final Map<String, Object> variables = new HashMap<>();
+    // Immutable variables shared by all the contexts created from the same base, see SpelBaseTemplateContext.
+    private final SlotVariables baseVariables;
+    private volatile SlotVariables variables = new SlotVariables();
+    // The variables are shared with a forked context, see fork(), they must be copied before writing.
+    private boolean variablesShared;
+    // Filled concurrently by the deferred calls of an evaluation, see DeferredCalls.
+    private final Map<Object, TypedValue> deferredCalls = new ConcurrentHashMap<>();
 
     public SecuredEvaluationContext() {
+        this(SlotVariables.EMPTY);
+    }
+
+    SecuredEvaluationContext(SlotVariables baseVariables) {
         // No root object by default.
         rootObject = TypedValue.NULL;
+        this.baseVariables = baseVariables;
     }
 
     @Override
@@ -108,19 +121,92 @@ public class SecuredEvaluationContext implements EvaluationContext {
 
     @Override
     public void setVariable(String name, Object value) {
-        this.variables.put(name, value);
+        writableVariables().put(name, value);
     }
 
     @Override
     public Object lookupVariable(String name) {
-        return this.variables.get(name);
+        final Method function = BuiltInFunctions.get(name);
+
+        if (function != null) {
+            return function;
+        }
+
+        return lookupVariable(VariableSlots.find(name), name);
     }
 
-    void putVariables(Map<String, Object> variables) {
-        this.variables.putAll(variables);
+    /**
+     * Looks a variable up by the slot of its name, without any hash lookup, see {@link VariableSlots}.
+     *
+     * @param slot the slot of the variable, {@link VariableSlots#NO_SLOT} if the name doesn't have any.
+     * @param name the name of the variable.
+     * @return the value of the variable, the one of the base context if it is not set on this context.
+     */
+    public Object lookupVariable(int slot, String name) {
+        final Object value = this.variables.get(slot, name);
+
+        if (value == null && !this.variables.contains(slot, name)) {
+            return this.baseVariables.get(slot, name);
+        }
+
+        return value;
+    }
+
+    /**
+     * Creates a context sharing the same variables, they are copied by the first of both contexts modifying them.
+     */
+    synchronized SecuredEvaluationContext fork() {
+        final SecuredEvaluationContext fork = new SecuredEvaluationContext(baseVariables);
+        fork.variables = this.variables;
+        fork.variablesShared = true;
+        this.variablesShared = true;
+        return fork;
+    }
+
+    /**
+     * Clears the variables set on this context so that it can be reused, the variables shared with a forked context are left untouched.
+     */
+    synchronized void reset() {
+        if (variablesShared) {
+            variables = new SlotVariables();
+            variablesShared = false;
+        } else {
+            variables.clear();
+        }
+        rootObject = TypedValue.NULL;
+        deferredCalls.clear();
     }
 
+    private synchronized SlotVariables writableVariables() {
+        if (variablesShared) {
+            variables = variables.copy();
+            variablesShared = false;
+        }
+        return variables;
+    }
+
+    /**
+     * @return a copy of the variables set on this context, by name.
+     */
     Map<String, Object> getVariables() {
-        return this.variables;
+        return this.variables.toMap();
+    }
+
+    /**
+     * @return a snapshot of the variables set on this context, see {@link SpelBaseTemplateContext}.
+     */
+    SlotVariables snapshotVariables() {
+        return this.variables.copy();
+    }
+
+    SlotVariables getBaseVariables() {
+        return this.baseVariables;
+    }
+
+    /**
+     * @return the results of the memoizable deferred function calls made against this context, see {@link MemoizedMethodExecutor}.
+     */
+    Map<Object, TypedValue> getDeferredCalls() {
+        return deferredCalls;
     }
 }
@@ -15,8 +15,15 @@
  */
 package io.gravitee.el.spel.context;
 
+import io.gravitee.el.annotations.Memoizable;
 import io.reactivex.rxjava3.annotations.NonNull;
 import java.lang.reflect.Method;
+import java.util.List;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.MethodExecutor;
+import org.springframework.expression.spel.support.ReflectiveMethodExecutor;
 import org.springframework.expression.spel.support.ReflectiveMethodResolver;
 
 /**
@@ -36,4 +43,27 @@ public class SecuredMethodResolver extends ReflectiveMethodResolver {
     public Method[] getMethods(@NonNull Class<?> type) {
         return securedResolver.getMethods(type);
     }
+
+    @Override
+    public MethodExecutor resolve(EvaluationContext context, Object targetObject, String name, List<TypeDescriptor> argumentTypes)
+        throws AccessException {
+        final MethodExecutor executor = super.resolve(context, targetObject, name, argumentTypes);
+
+        if (targetObject instanceof DeferredFunctionHolder && executor instanceof ReflectiveMethodExecutor reflectiveMethodExecutor) {
+            final Method method = reflectiveMethodExecutor.getMethod();
+            final Memoizable memoizable = memoizable(targetObject.getClass(), method);
+
+            if (memoizable != null) {
+                // Ex: {#holder.get('a')}, resolved once per template context whatever the number of expressions making the call.
+                return new MemoizedMethodExecutor(executor, method, memoizable.shared());
+            }
+        }
+
+        return executor;
+    }
+
+    private static Memoizable memoizable(Class<?> type, Method method) {
+        final Memoizable memoizable = method.getAnnotation(Memoizable.class);
+        return memoizable != null ? memoizable : type.getAnnotation(Memoizable.class);
+    }
 }
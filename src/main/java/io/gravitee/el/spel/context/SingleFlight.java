@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical lookups happening at the same time, ex: the same secret resolved by many concurrent requests. The first subscription
+ * triggers the lookup, the ones made while it is in flight attach to it and get the same outcome. The lookup is forgotten as soon as it completes,
+ * a later subscription triggers a new one.
+ * <p/>
+ * The number of lookups in flight is bounded: beyond the limit, lookups are not coalesced anymore until some of them complete.
+ *
+ * @author GraviteeSource Team
+ */
+public final class SingleFlight {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10_000;
+
+    private static final SingleFlight SHARED = new SingleFlight(DEFAULT_MAX_IN_FLIGHT);
+
+    private final Map<Object, Maybe<?>> inFlight = new ConcurrentHashMap<>();
+    private final int maxInFlight;
+
+    public SingleFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return the instance shared by all the template contexts.
+     */
+    public static SingleFlight shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a {@link Maybe} attaching to the lookup in flight for the same key when it is subscribed, or triggering the given one otherwise.
+     *
+     * @param key the key identifying the lookup, it must implement <code>equals</code> and <code>hashCode</code>.
+     * @param lookup the lookup to trigger if none is in flight for the key.
+     * @param <T> the type of the value.
+     * @return the coalesced lookup.
+     */
+    public <T> Maybe<T> maybe(Object key, Supplier<Maybe<T>> lookup) {
+        return Maybe.defer(() -> join(key, lookup));
+    }
+
+    /**
+     * Same as {@link #maybe(Object, Supplier)} with a {@link Single}.
+     */
+    public <T> Single<T> single(Object key, Supplier<Single<T>> lookup) {
+        return Maybe.defer(() -> join(key, () -> lookup.get().toMaybe())).toSingle();
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Maybe<T> join(Object key, Supplier<Maybe<T>> lookup) {
+        final Maybe<T> existing = (Maybe<T>) inFlight.get(key);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        if (inFlight.size() >= maxInFlight) {
+            return lookup.get();
+        }
+
+        final Maybe<T>[] registered = new Maybe[1];
+        // The entry is removed by the lookup itself once it terminates, late subscribers of the same entry still get the cached outcome.
+        registered[0] = lookup.get().doFinally(() -> inFlight.remove(key, registered[0])).cache();
+
+        final Maybe<T> previous = (Maybe<T>) inFlight.putIfAbsent(key, registered[0]);
+        return previous != null ? previous : registered[0];
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Variables of a {@link SecuredEvaluationContext}, stored in an array indexed by the slot of their name, see {@link VariableSlots}. The names
+ * without any slot, not referenced by any parsed expression when they are set, are kept in a map.
+ * <p/>
+ * The variables may be set concurrently, e.g. by deferred variables resolved in parallel. Writes are serialized and the array is copied when
+ * growing, then published through a volatile field, so that a lookup never misses a variable set before it.
+ *
+ * @author GraviteeSource Team
+ */
+final class SlotVariables {
+
+    // Distinguishes a variable set to null, which hides the base context one, from a variable not set.
+    private static final Object NULL_VALUE = new Object();
+    private static final Object[] NO_VALUES = new Object[0];
+
+    static final SlotVariables EMPTY = new SlotVariables();
+
+    private volatile Object[] values = NO_VALUES;
+    private volatile Map<String, Object> unslotted;
+
+    /**
+     * @return a copy of these variables, the values themselves are not copied.
+     */
+    synchronized SlotVariables copy() {
+        final SlotVariables copy = new SlotVariables();
+        copy.values = values.length == 0 ? NO_VALUES : values.clone();
+        copy.unslotted = unslotted == null ? null : new ConcurrentHashMap<>(unslotted);
+        return copy;
+    }
+
+    synchronized void put(String name, Object value) {
+        final Object stored = value == null ? NULL_VALUE : value;
+        // Only the names referenced by a parsed expression have a slot, the other ones are not registered.
+        final int slot = VariableSlots.find(name);
+
+        if (slot == VariableSlots.NO_SLOT) {
+            if (unslotted == null) {
+                unslotted = new ConcurrentHashMap<>();
+            }
+            unslotted.put(name, stored);
+            return;
+        }
+
+        Object[] current = values;
+
+        if (slot >= current.length) {
+            // Sized for the names set on this context, growing by half to not copy the array for each new name.
+            current = Arrays.copyOf(current, Math.max(slot + 1, Math.min(current.length + (current.length >> 1), VariableSlots.size())));
+        }
+
+        current[slot] = stored;
+        // Published again even when not grown, for the value to be visible to the lookups reading the field.
+        values = current;
+
+        if (unslotted != null) {
+            // Set before its name got a slot.
+            unslotted.remove(name);
+        }
+    }
+
+    /**
+     * @return the number of slots this context has room for.
+     */
+    int capacity() {
+        return values.length;
+    }
+
+    synchronized void clear() {
+        final Object[] current = values;
+        Arrays.fill(current, null);
+        values = current;
+        unslotted = null;
+    }
+
+    Object get(String name) {
+        return get(VariableSlots.find(name), name);
+    }
+
+    Object get(int slot, String name) {
+        final Object value = find(slot, name);
+        return value == NULL_VALUE ? null : value;
+    }
+
+    boolean contains(int slot, String name) {
+        return find(slot, name) != null;
+    }
+
+    private Object find(int slot, String name) {
+        if (slot != VariableSlots.NO_SLOT) {
+            final Object[] current = values;
+
+            if (slot < current.length && current[slot] != null) {
+                return current[slot];
+            }
+        }
+
+        // Not set or set before its name got a slot.
+        final Map<String, Object> byName = unslotted;
+        return byName == null ? null : byName.get(name);
+    }
+
+    /**
+     * @return the variables by name, built on each call.
+     */
+    Map<String, Object> toMap() {
+        final Map<String, Object> map = new HashMap<>();
+        final Map<String, Object> byName = unslotted;
+
+        if (byName != null) {
+            byName.forEach((name, value) -> map.put(name, value == NULL_VALUE ? null : value));
+        }
+
+        final Object[] current = values;
+
+        for (int slot = 0; slot < current.length; slot++) {
+            if (current[slot] != null) {
+                map.put(VariableSlots.nameOf(slot), current[slot] == NULL_VALUE ? null : current[slot]);
+            }
+        }
+
+        return map;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import io.gravitee.el.BaseTemplateContext;
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.TemplateVariableProvider;
+import java.util.Collection;
+
+/**
+ * {@link BaseTemplateContext} of the SpEL template engines: the variables provided are snapshot once, the deferred variables registered on the
+ * base are shared with each template context created from it.
+ *
+ * @author GraviteeSource Team
+ */
+public final class SpelBaseTemplateContext implements BaseTemplateContext {
+
+    private final SpelTemplateContext templateContext;
+    private final SlotVariables variables;
+    private final Collection<? extends TemplateVariableProvider> providers;
+
+    private SpelBaseTemplateContext(SpelTemplateContext templateContext, Collection<? extends TemplateVariableProvider> providers) {
+        this.templateContext = templateContext;
+        this.providers = providers;
+        // The registrations are shared by the contexts created from the base, each of them copies them before registering its own.
+        templateContext.shareRegistrations();
+        this.variables = ((SecuredEvaluationContext) templateContext.getContext()).snapshotVariables();
+    }
+
+    /**
+     * Builds a base context from the variables given by the providers.
+     *
+     * @param providers the providers of the variables.
+     * @return the base context.
+     */
+    public static SpelBaseTemplateContext of(Collection<? extends TemplateVariableProvider> providers) {
+        final SpelTemplateContext templateContext = new SpelTemplateContext();
+        providers.forEach(provider -> provider.provide(templateContext));
+        return new SpelBaseTemplateContext(templateContext, providers);
+    }
+
+    @Override
+    public Object lookupVariable(String name) {
+        return variables.get(name);
+    }
+
+    /**
+     * Applies the providers again, the SpEL template engines look the variables of the base up instead.
+     */
+    @Override
+    public void provide(TemplateContext templateContext) {
+        providers.forEach(provider -> provider.provide(templateContext));
+    }
+
+    SlotVariables getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return the context the providers have been applied to, holding the deferred variables copied to each template context.
+     */
+    SpelTemplateContext getTemplateContext() {
+        return templateContext;
+    }
+}
@@ -15,19 +15,18 @@
  */
 package io.gravitee.el.spel.context;
 
+import io.gravitee.el.DeferredValueStore;
+import io.gravitee.el.DeferredVariableOptions;
 import io.gravitee.el.TemplateContext;
 import io.gravitee.el.spel.CachedExpression;
-import io.gravitee.el.spel.function.json.JsonPathFunction;
-import io.gravitee.el.spel.function.json.escape.JsonEscapeFunction;
-import io.gravitee.el.spel.function.xml.XPathFunction;
-import io.gravitee.el.spel.function.xml.escape.XmlEscapeFunction;
+import io.gravitee.el.spel.cache.DeferredValueCache;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import java.lang.reflect.Method;
 import java.util.*;
-import org.springframework.beans.BeanUtils;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.expression.EvaluationContext;
 
 /**
@@ -36,31 +35,126 @@ import org.springframework.expression.EvaluationContext;
  */
 public class SpelTemplateContext implements TemplateContext {
 
-    protected static final Method JSON_PATH_EVAL_METHOD = BeanUtils.resolveSignature("evaluate", JsonPathFunction.class);
-    protected static final Method XPATH_EVAL_METHOD = BeanUtils.resolveSignature("evaluate", XPathFunction.class);
-    protected static final Method XML_ESCAPE_EVAL_METHOD = BeanUtils.resolveSignature("evaluate", XmlEscapeFunction.class);
-    protected static final Method JSON_ESCAPE_EVAL_METHOD = BeanUtils.resolveSignature("evaluate", JsonEscapeFunction.class);
+    protected static final Method JSON_PATH_EVAL_METHOD = BuiltInFunctions.JSON_PATH;
+    protected static final Method XPATH_EVAL_METHOD = BuiltInFunctions.XPATH;
+    protected static final Method XML_ESCAPE_EVAL_METHOD = BuiltInFunctions.XML_ESCAPE;
+    protected static final Method JSON_ESCAPE_EVAL_METHOD = BuiltInFunctions.JSON_ESCAPE;
     private final EvaluationContext context;
+    private final Single<EvaluationContext> resolvedContext;
     private Map<String, Object> deferredVariables;
+    // Shared by the concurrent evaluations of this context, they subscribe to the same resolution.
+    private final Map<String, Object> memoizedDeferredVariables = new ConcurrentHashMap<>();
+    private Set<String> volatileDeferredVariables;
+    private Map<String, Integer> deferredVariableCosts;
+    private int deferredVariablesMaxConcurrency = Integer.MAX_VALUE;
     private Map<String, Object> deferredFunctionsHolders;
 
+    // The deferred registrations are shared with the contexts forked from this one (or this one was forked from), they must be copied before writing.
+    private boolean registrationsShared;
+
     public SpelTemplateContext() {
-        context = new SecuredEvaluationContext();
-        context.setVariable("jsonPath", JSON_PATH_EVAL_METHOD);
-        context.setVariable("xpath", XPATH_EVAL_METHOD);
-        context.setVariable("xmlEscape", XML_ESCAPE_EVAL_METHOD);
-        context.setVariable("jsonEscape", JSON_ESCAPE_EVAL_METHOD);
+        // The built-in functions (jsonPath, xpath, ...) are not variables of the context, see BuiltInFunctions.
+        this(new SecuredEvaluationContext());
     }
 
+    /**
+     * Forks the given context: the variables and the deferred registrations are shared until one of the contexts modifies them, forking doesn't
+     * depend on the number of variables.
+     *
+     * @param templateContext the context to fork.
+     */
     public SpelTemplateContext(SpelTemplateContext templateContext) {
-        this();
-        if (templateContext.deferredVariables != null) {
-            this.deferredVariables = new HashMap<>(templateContext.deferredVariables);
+        this(((SecuredEvaluationContext) templateContext.context).fork());
+        templateContext.shareRegistrations();
+        shareDeferredVariables(templateContext);
+    }
+
+    /**
+     * Creates a context on top of a base context: the variables of the base are looked up without being copied, the ones set on this context
+     * override them.
+     *
+     * @param base the base context, ex: the one of an API.
+     */
+    public SpelTemplateContext(SpelBaseTemplateContext base) {
+        this(new SecuredEvaluationContext(base.getVariables()));
+        shareDeferredVariables(base.getTemplateContext());
+    }
+
+    private SpelTemplateContext(SecuredEvaluationContext context) {
+        this.context = context;
+        this.resolvedContext = Single.just(context);
+    }
+
+    private void shareDeferredVariables(SpelTemplateContext templateContext) {
+        this.deferredVariables = templateContext.deferredVariables;
+        this.volatileDeferredVariables = templateContext.volatileDeferredVariables;
+        this.deferredVariableCosts = templateContext.deferredVariableCosts;
+        this.deferredFunctionsHolders = templateContext.deferredFunctionsHolders;
+        this.deferredVariablesMaxConcurrency = templateContext.deferredVariablesMaxConcurrency;
+        this.registrationsShared = true;
+    }
+
+    /**
+     * Marks the registrations of this context as shared with other contexts, it copies them before registering new ones.
+     */
+    void shareRegistrations() {
+        this.registrationsShared = true;
+    }
+
+    private void ensureOwnRegistrations() {
+        if (!registrationsShared) {
+            return;
+        }
+
+        if (deferredVariables != null) {
+            deferredVariables = new HashMap<>(deferredVariables);
+        }
+        if (volatileDeferredVariables != null) {
+            volatileDeferredVariables = new HashSet<>(volatileDeferredVariables);
+        }
+        if (deferredVariableCosts != null) {
+            deferredVariableCosts = new HashMap<>(deferredVariableCosts);
+        }
+        if (deferredFunctionsHolders != null) {
+            deferredFunctionsHolders = new HashMap<>(deferredFunctionsHolders);
         }
-        if (templateContext.deferredFunctionsHolders != null) {
-            this.deferredFunctionsHolders = new HashMap<>(templateContext.deferredFunctionsHolders);
+        registrationsShared = false;
+    }
+
+    /**
+     * Clears the variables and the deferred registrations of this context so that it can be reused, ex: by a pooled template engine.
+     * The registrations shared with a forked context are dropped instead of being cleared.
+     */
+    public void reset() {
+        ((SecuredEvaluationContext) context).reset();
+
+        if (registrationsShared) {
+            deferredVariables = null;
+            volatileDeferredVariables = null;
+            deferredVariableCosts = null;
+            deferredFunctionsHolders = null;
+            registrationsShared = false;
+        } else {
+            clear(deferredVariables);
+            clear(volatileDeferredVariables);
+            clear(deferredVariableCosts);
+            clear(deferredFunctionsHolders);
+        }
+
+        memoizedDeferredVariables.clear();
+        deferredVariablesMaxConcurrency = Integer.MAX_VALUE;
+    }
+
+    private static void clear(Map<?, ?> map) {
+        if (map != null) {
+            map.clear();
+        }
+    }
+
+    private static void clear(Set<?> set) {
+        if (set != null) {
+            set.clear();
         }
-        ((SecuredEvaluationContext) context).putVariables(new HashMap<>(templateContext.getVariables()));
     }
 
     @Override
@@ -70,21 +164,45 @@ public class SpelTemplateContext implements TemplateContext {
 
     @Override
     public void setDeferredVariable(String name, Completable deferred) {
-        addDeferredVariable(name, deferred);
+        addDeferredVariable(name, deferred, DeferredVariableOptions.DEFAULT_MEMOIZED, DeferredVariableOptions.DEFAULT_COST);
     }
 
     @Override
     public void setDeferredVariable(String name, Maybe<?> deferred) {
-        addDeferredVariable(name, deferred);
+        addDeferredVariable(name, deferred, DeferredVariableOptions.DEFAULT_MEMOIZED, DeferredVariableOptions.DEFAULT_COST);
     }
 
     @Override
     public void setDeferredVariable(String name, Single<?> deferred) {
-        addDeferredVariable(name, deferred);
+        addDeferredVariable(name, deferred, DeferredVariableOptions.DEFAULT_MEMOIZED, DeferredVariableOptions.DEFAULT_COST);
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Completable deferred, DeferredVariableOptions options) {
+        addDeferredVariable(name, cached(deferred, options), options.isMemoized(), options.getCost());
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Maybe<?> deferred, DeferredVariableOptions options) {
+        addDeferredVariable(name, cached(deferred, options), options.isMemoized(), options.getCost());
+    }
+
+    @Override
+    public void setDeferredVariable(String name, Single<?> deferred, DeferredVariableOptions options) {
+        addDeferredVariable(name, cached(deferred, options), options.isMemoized(), options.getCost());
+    }
+
+    @Override
+    public void setDeferredVariablesMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be positive");
+        }
+        this.deferredVariablesMaxConcurrency = maxConcurrency;
     }
 
     @Override
     public void setDeferredFunctionHolderVariable(String name, DeferredFunctionHolder deferredFunctionHolder) {
+        ensureOwnRegistrations();
         if (deferredFunctionsHolders == null) {
             deferredFunctionsHolders = new HashMap<>();
         }
@@ -103,27 +221,252 @@ public class SpelTemplateContext implements TemplateContext {
     }
 
     public Single<EvaluationContext> evaluationContext(CachedExpression expression) {
-        if (deferredVariables != null) {
-            return Flowable
-                .fromIterable(deferredVariables.entrySet())
-                .filter(deferredEntry -> requiresDeferredVariable(expression, deferredEntry))
-                .flatMapCompletable(e -> resolveDeferred(e.getKey(), e.getValue()))
-                .andThen(Single.just(context));
+        final List<String> required = requiredDeferredVariables(expression);
+
+        if (required == null) {
+            return resolvedContext;
         }
 
-        return Single.just(context);
+        return resolveDeferredVariables(required).andThen(resolvedContext);
+    }
+
+    /**
+     * Same as {@link #evaluationContext(CachedExpression)} except that the deferred variables only accessed by conditional branches of the expression
+     * (see {@link CachedExpression#getUnconditionalVariablePaths()}) are not resolved. The returned context is then a {@link StagedEvaluationContext}
+     * interrupting the evaluation with a {@link DeferredVariableRequiredException} when a branch accesses one of them, they must be resolved with
+     * {@link #resolveDeferredVariables(List)} before evaluating the expression again.
+     *
+     * @param expression the expression to evaluate.
+     * @return the evaluation context with the deferred variables unconditionally required by the expression.
+     */
+    public Single<EvaluationContext> stagedEvaluationContext(CachedExpression expression) {
+        final List<String> required = requiredDeferredVariables(expression);
+
+        if (required == null) {
+            return resolvedContext;
+        }
+
+        final List<String> conditional = conditionalDeferredVariables(expression, required);
+
+        if (conditional == null) {
+            return resolveDeferredVariables(required).andThen(resolvedContext);
+        }
+
+        final Single<EvaluationContext> stagedContext = Single.fromCallable(() -> new StagedEvaluationContext(context, conditional));
+        return required.isEmpty() ? stagedContext : resolveDeferredVariables(required).andThen(stagedContext);
+    }
+
+    /**
+     * Evaluation context of an expression making deferred calls (see {@link CachedExpression#expressionsToDefer()}). Same as
+     * {@link #stagedEvaluationContext(CachedExpression)} except that a {@link StagedEvaluationContext} is always created: it receives the results
+     * of the deferred calls for this evaluation. The deferred calls only made by conditional branches are pending, as the deferred variables are.
+     *
+     * @param expression the expression to evaluate.
+     * @return the evaluation context with the deferred variables unconditionally required by the expression.
+     */
+    public Single<StagedEvaluationContext> deferredCallsEvaluationContext(CachedExpression expression) {
+        final List<String> required = requiredDeferredVariables(expression);
+        final List<String> pending = pendingDeferredVariablesAndCalls(expression, required);
+        final Single<StagedEvaluationContext> stagedContext = Single.fromCallable(() -> new StagedEvaluationContext(context, pending));
+
+        return required == null || required.isEmpty() ? stagedContext : resolveDeferredVariables(required).andThen(stagedContext);
+    }
+
+    /**
+     * Synchronous counterpart of {@link #deferredCallsEvaluationContext(CachedExpression)}, see {@link #evaluationContextNow(CachedExpression)}.
+     *
+     * @param expression the expression to evaluate.
+     * @return the evaluation context with the deferred variables unconditionally required by the expression.
+     */
+    public StagedEvaluationContext deferredCallsEvaluationContextNow(CachedExpression expression) {
+        final List<String> required = requiredDeferredVariables(expression);
+        final List<String> pending = pendingDeferredVariablesAndCalls(expression, required);
+
+        if (required != null) {
+            resolveDeferredVariablesNow(required);
+        }
+
+        return new StagedEvaluationContext(context, pending);
+    }
+
+    /**
+     * Synchronous counterpart of {@link #evaluationContext(CachedExpression)}: the deferred variables required by the expression must already be
+     * resolved (see {@link SynchronousResolver}), an {@link io.gravitee.el.exceptions.ExpressionEvaluationException} is thrown otherwise.
+     *
+     * @param expression the expression to evaluate.
+     * @return the evaluation context with the deferred variables required by the expression.
+     */
+    public EvaluationContext evaluationContextNow(CachedExpression expression) {
+        final List<String> required = requiredDeferredVariables(expression);
+
+        if (required != null) {
+            resolveDeferredVariablesNow(required);
+        }
+
+        return context;
+    }
+
+    /**
+     * Synchronous counterpart of {@link #stagedEvaluationContext(CachedExpression)}, see {@link #evaluationContextNow(CachedExpression)}.
+     *
+     * @param expression the expression to evaluate.
+     * @return the evaluation context with the deferred variables unconditionally required by the expression.
+     */
+    public EvaluationContext stagedEvaluationContextNow(CachedExpression expression) {
+        final List<String> required = requiredDeferredVariables(expression);
+
+        if (required == null) {
+            return context;
+        }
+
+        final List<String> conditional = conditionalDeferredVariables(expression, required);
+        resolveDeferredVariablesNow(required);
+
+        return conditional == null ? context : new StagedEvaluationContext(context, conditional);
+    }
+
+    /**
+     * Resolves the given deferred variables, ex: the ones reported by a {@link DeferredVariableRequiredException}.
+     *
+     * @param names the names of the deferred variables.
+     * @return a {@link Completable} completing once all the deferred variables are resolved.
+     */
+    public Completable resolveDeferredVariables(List<String> names) {
+        if (names.size() == 1) {
+            final String key = names.get(0);
+            return resolveDeferred(key, memoized(key, deferredVariables.get(key)));
+        }
+
+        return Flowable
+            .fromIterable(byCost(names))
+            .flatMapCompletable(key -> resolveDeferred(key, memoized(key, deferredVariables.get(key))), false, deferredVariablesMaxConcurrency);
+    }
+
+    /**
+     * @return the deferred variables, the cheapest first, as they are subscribed in this order.
+     */
+    private List<String> byCost(List<String> names) {
+        if (deferredVariableCosts == null) {
+            return names;
+        }
+
+        final List<String> sorted = new ArrayList<>(names);
+        sorted.sort(Comparator.comparingInt(name -> deferredVariableCosts.getOrDefault(name, DeferredVariableOptions.DEFAULT_COST)));
+        return sorted;
+    }
+
+    /**
+     * Synchronous counterpart of {@link #resolveDeferredVariables(List)}, the deferred variables must already be resolved.
+     *
+     * @param names the names of the deferred variables.
+     */
+    public void resolveDeferredVariablesNow(List<String> names) {
+        for (String key : names) {
+            resolveDeferredNow(key, memoized(key, deferredVariables.get(key)));
+        }
+    }
+
+    /**
+     * @param expression the expression to evaluate.
+     * @return <code>true</code> if the expression uses at least one deferred variable, the evaluation context must then be obtained from
+     * {@link #evaluationContext(CachedExpression)} to resolve them first.
+     */
+    public boolean requiresDeferredVariables(CachedExpression expression) {
+        return requiredDeferredVariables(expression) != null;
     }
 
     public Set<String> knownDeferredVariablesName() {
         return deferredFunctionsHolders != null ? deferredFunctionsHolders.keySet() : Collections.emptySet();
     }
 
-    private boolean requiresDeferredVariable(CachedExpression expression, Map.Entry<String, Object> deferredEntry) {
-        // Ex: expression: 'request.contentJson.test', variable 'request.contentJson'
-        return expression
-            .getVariables()
-            .stream()
-            .anyMatch(variable -> variable.equals(deferredEntry.getKey()) || variable.startsWith(deferredEntry.getKey() + "."));
+    /**
+     * @return the names of the deferred variables of this context, used to know which conditional branches must be guarded, see
+     * {@link CachedExpression#getUnconditionalVariablePaths()}.
+     */
+    public Set<String> deferredVariablesName() {
+        return deferredVariables != null ? deferredVariables.keySet() : Collections.emptySet();
+    }
+
+    /**
+     * @return the names of the deferred variables required by the expression, <code>null</code> if there is none.
+     */
+    private List<String> requiredDeferredVariables(CachedExpression expression) {
+        if (deferredVariables == null) {
+            return null;
+        }
+
+        // Ex: expression: 'request.contentJson.test', variable 'request.contentJson', both sides are hashed sets, iterate over the smallest one.
+        final Set<String> paths = expression.getVariablePaths();
+        List<String> required = null;
+
+        if (paths.size() < deferredVariables.size()) {
+            for (String path : paths) {
+                if (deferredVariables.containsKey(path)) {
+                    required = add(required, path);
+                }
+            }
+        } else {
+            for (String key : deferredVariables.keySet()) {
+                if (paths.contains(key)) {
+                    required = add(required, key);
+                }
+            }
+        }
+
+        return required;
+    }
+
+    /**
+     * Moves the deferred variables that the expression only accesses in conditional branches out of the required ones.
+     *
+     * @return the conditional deferred variables, <code>null</code> if there is none.
+     */
+    private static List<String> conditionalDeferredVariables(CachedExpression expression, List<String> required) {
+        final Set<String> unconditionalPaths = expression.getUnconditionalVariablePaths();
+
+        if (unconditionalPaths == expression.getVariablePaths()) {
+            // No variable is accessed conditionally, ex: "{#request.content == 'a'}".
+            return null;
+        }
+
+        List<String> conditional = null;
+
+        for (Iterator<String> it = required.iterator(); it.hasNext();) {
+            final String key = it.next();
+            if (!unconditionalPaths.contains(key)) {
+                conditional = add(conditional, key);
+                it.remove();
+            }
+        }
+
+        return conditional;
+    }
+
+    /**
+     * Moves the deferred variables that the expression only accesses in conditional branches out of the required ones and adds the deferred calls
+     * only made by conditional branches.
+     *
+     * @return the conditional deferred variables and calls.
+     */
+    private static List<String> pendingDeferredVariablesAndCalls(CachedExpression expression, List<String> required) {
+        List<String> pending = required == null ? null : conditionalDeferredVariables(expression, required);
+        final Set<String> unconditionalPaths = expression.getUnconditionalVariablePaths();
+
+        for (String name : expression.expressionsToDefer().keySet()) {
+            if (!unconditionalPaths.contains(name)) {
+                pending = add(pending, name);
+            }
+        }
+
+        return pending == null ? Collections.emptyList() : pending;
+    }
+
+    private static List<String> add(List<String> list, String value) {
+        if (list == null) {
+            list = new ArrayList<>(2);
+        }
+        list.add(value);
+        return list;
     }
 
     private Completable resolveDeferred(String key, Object deferred) {
@@ -138,15 +481,101 @@ public class SpelTemplateContext implements TemplateContext {
         return Completable.error(new RuntimeException("Deferred EL variable unsupported" + deferred.getClass().getSimpleName()));
     }
 
-    private void addDeferredVariable(String name, Object deferred) {
+    private void resolveDeferredNow(String key, Object deferred) {
+        if (deferred instanceof Completable completable) {
+            SynchronousResolver.resolveNow(completable.toMaybe(), key);
+        } else if (deferred instanceof Maybe<?> maybe) {
+            setResolvedVariable(key, SynchronousResolver.resolveNow(maybe, key));
+        } else if (deferred instanceof Single<?> single) {
+            setResolvedVariable(key, SynchronousResolver.resolveNow(single.toMaybe(), key));
+        } else {
+            throw new RuntimeException("Deferred EL variable unsupported" + deferred.getClass().getSimpleName());
+        }
+    }
+
+    private void setResolvedVariable(String key, Object value) {
+        // Same as the reactive resolution, an empty deferred variable doesn't override the variable.
+        if (value != null) {
+            context.setVariable(key, value);
+        }
+    }
+
+    /**
+     * Returns the deferred variable to subscribe to: the same cached source for all the evaluations of this context, unless the variable is volatile.
+     */
+    private Object memoized(String key, Object deferred) {
+        if (volatileDeferredVariables != null && volatileDeferredVariables.contains(key)) {
+            return deferred;
+        }
+
+        return memoizedDeferredVariables.computeIfAbsent(key, k -> memoize(key, deferred));
+    }
+
+    private Object memoize(String key, Object deferred) {
+        // A failure is shared by the evaluations already waiting for it, the next ones subscribe again.
+        if (deferred instanceof Completable completable) {
+            return completable.doOnError(e -> memoizedDeferredVariables.remove(key)).cache();
+        } else if (deferred instanceof Maybe<?> maybe) {
+            return maybe.doOnError(e -> memoizedDeferredVariables.remove(key)).cache();
+        } else if (deferred instanceof Single<?> single) {
+            return single.doOnError(e -> memoizedDeferredVariables.remove(key)).cache();
+        }
+
+        return deferred;
+    }
+
+    private static Object cached(Object deferred, DeferredVariableOptions options) {
+        if (options.getCacheKey() == null) {
+            return deferred;
+        }
+
+        final DeferredValueStore cache = options.getCache() != null ? options.getCache() : DeferredValueCache.shared();
+
+        if (deferred instanceof Maybe<?> maybe) {
+            return cache.maybe(options.getCacheKey(), maybe);
+        } else if (deferred instanceof Single<?> single) {
+            return cache.single(options.getCacheKey(), single);
+        }
+
+        throw new IllegalArgumentException("Only a Maybe or a Single deferred variable can be cached");
+    }
+
+    private void addDeferredVariable(String name, Object deferred, boolean memoized, int cost) {
         Objects.requireNonNull(deferred, "Deferred EL variable cannot be null");
+        ensureOwnRegistrations();
         if (deferredVariables == null) {
             deferredVariables = new HashMap<>();
         }
 
         deferredVariables.put(name, deferred);
+
+        // A new deferred value replaces the previous resolution.
+        memoizedDeferredVariables.remove(name);
+
+        if (memoized) {
+            if (volatileDeferredVariables != null) {
+                volatileDeferredVariables.remove(name);
+            }
+        } else {
+            if (volatileDeferredVariables == null) {
+                volatileDeferredVariables = new HashSet<>();
+            }
+            volatileDeferredVariables.add(name);
+        }
+
+        if (cost != DeferredVariableOptions.DEFAULT_COST) {
+            if (deferredVariableCosts == null) {
+                deferredVariableCosts = new HashMap<>();
+            }
+            deferredVariableCosts.put(name, cost);
+        } else if (deferredVariableCosts != null) {
+            deferredVariableCosts.remove(name);
+        }
     }
 
+    /**
+     * @return the variables set on this context, without the ones of its base context.
+     */
     Map<String, Object> getVariables() {
         return ((SecuredEvaluationContext) this.context).getVariables();
     }
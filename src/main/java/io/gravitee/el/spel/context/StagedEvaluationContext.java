@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.springframework.expression.*;
+
+/**
+ * Evaluation context of an expression whose deferred variables are only used in conditional branches, ex:
+ * <code>{#request.headers['X'] != null || #request.content == 'b'}</code>. These deferred variables are not resolved before the evaluation:
+ * when a guarded variable is accessed (see {@link #requireResolved(String)}), the evaluation is interrupted with a
+ * {@link DeferredVariableRequiredException} so that they can be resolved before evaluating again.
+ * <p/>
+ * It also holds the results of the deferred calls of the expression, ex: <code>#%0</code> for <code>{#deferHolder.get('val') == 'b'}</code>: they
+ * are resolved for this evaluation only and don't go through the template context.
+ * <p/>
+ * A staged evaluation context is created for a single evaluation, it delegates everything else to the template context.
+ *
+ * @author GraviteeSource Team
+ */
+public final class StagedEvaluationContext implements EvaluationContext {
+
+    // Deferred call results are stored in a concurrent map as independent calls complete concurrently, a null result is stored as this marker.
+    private static final Object NULL_RESULT = new Object();
+
+    private final EvaluationContext delegate;
+    private final List<String> pending;
+    private volatile Map<String, Object> deferredCallResults;
+
+    StagedEvaluationContext(EvaluationContext delegate, List<String> pending) {
+        this.delegate = delegate;
+        this.pending = new ArrayList<>(pending);
+    }
+
+    /**
+     * Interrupts the evaluation if the given variable path requires deferred variables that are not resolved yet.
+     *
+     * @param path the variable path about to be accessed, ex: <code>request.content</code>.
+     * @throws DeferredVariableRequiredException with the deferred variables to resolve first.
+     */
+    public void requireResolved(String path) {
+        List<String> required = null;
+
+        for (String key : pending) {
+            if (dependsOn(path, key)) {
+                if (required == null) {
+                    required = new ArrayList<>(1);
+                }
+                required.add(key);
+            }
+        }
+
+        if (required != null) {
+            throw new DeferredVariableRequiredException(required);
+        }
+    }
+
+    /**
+     * Marks the given deferred variables as resolved, the evaluation no longer gets interrupted when accessing them.
+     * They stay pending until then: a compiled expression interrupted by a guard is evaluated again by SpEL in interpreted mode, which must be
+     * interrupted the same way.
+     *
+     * @param names the deferred variables that have been resolved, ex: the ones of a {@link DeferredVariableRequiredException}.
+     */
+    public void resolved(List<String> names) {
+        pending.removeAll(names);
+    }
+
+    /**
+     * Same as {@link #requireResolved(String)} when the given context is a staged one, does nothing otherwise. Called by the compiled expressions.
+     *
+     * @param context the context of the evaluation.
+     * @param path the variable path about to be accessed.
+     */
+    public static void requireResolved(EvaluationContext context, String path) {
+        if (context instanceof StagedEvaluationContext stagedEvaluationContext) {
+            stagedEvaluationContext.requireResolved(path);
+        }
+    }
+
+    /**
+     * @param path a variable path, ex: <code>request.content</code>.
+     * @param deferredVariable the name of a deferred variable.
+     * @return <code>true</code> if accessing the path may require the deferred variable to be resolved.
+     */
+    public static boolean dependsOn(String path, String deferredVariable) {
+        // Ex: path 'request.content.test' and deferred variable 'request.content', or path 'request' that may lead to 'request.content'.
+        return isSameOrParentPath(deferredVariable, path) || isSameOrParentPath(path, deferredVariable);
+    }
+
+    /**
+     * Gives the result of a deferred call of the expression being evaluated, it is looked up as a variable by the expression.
+     *
+     * @param name the name of the variable the deferred call has been replaced by, see {@link io.gravitee.el.spel.CachedExpression#expressionsToDefer()}.
+     * @param result the result of the call, <code>null</code> if it is empty.
+     */
+    public void setDeferredCallResult(String name, Object result) {
+        if (deferredCallResults == null) {
+            synchronized (this) {
+                if (deferredCallResults == null) {
+                    deferredCallResults = new ConcurrentHashMap<>();
+                }
+            }
+        }
+
+        deferredCallResults.put(name, result == null ? NULL_RESULT : result);
+    }
+
+    EvaluationContext getDelegate() {
+        return delegate;
+    }
+
+    private static boolean isSameOrParentPath(String parent, String path) {
+        return path.startsWith(parent) && (path.length() == parent.length() || path.charAt(parent.length()) == '.');
+    }
+
+    @Override
+    public TypedValue getRootObject() {
+        return delegate.getRootObject();
+    }
+
+    @Override
+    public List<PropertyAccessor> getPropertyAccessors() {
+        return delegate.getPropertyAccessors();
+    }
+
+    @Override
+    public List<IndexAccessor> getIndexAccessors() {
+        return delegate.getIndexAccessors();
+    }
+
+    @Override
+    public List<ConstructorResolver> getConstructorResolvers() {
+        return delegate.getConstructorResolvers();
+    }
+
+    @Override
+    public List<MethodResolver> getMethodResolvers() {
+        return delegate.getMethodResolvers();
+    }
+
+    @Override
+    public BeanResolver getBeanResolver() {
+        return delegate.getBeanResolver();
+    }
+
+    @Override
+    public TypeLocator getTypeLocator() {
+        return delegate.getTypeLocator();
+    }
+
+    @Override
+    public TypeConverter getTypeConverter() {
+        return delegate.getTypeConverter();
+    }
+
+    @Override
+    public TypeComparator getTypeComparator() {
+        return delegate.getTypeComparator();
+    }
+
+    @Override
+    public OperatorOverloader getOperatorOverloader() {
+        return delegate.getOperatorOverloader();
+    }
+
+    @Override
+    public TypedValue assignVariable(String name, Supplier<TypedValue> valueSupplier) {
+        return delegate.assignVariable(name, valueSupplier);
+    }
+
+    @Override
+    public void setVariable(String name, Object value) {
+        delegate.setVariable(name, value);
+    }
+
+    @Override
+    public Object lookupVariable(String name) {
+        if (deferredCallResults != null) {
+            final Object result = deferredCallResults.get(name);
+
+            if (result != null) {
+                return result == NULL_RESULT ? null : result;
+            }
+        }
+
+        return delegate.lookupVariable(name);
+    }
+
+    @Override
+    public boolean isAssignmentEnabled() {
+        return delegate.isAssignmentEnabled();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.MaybeObserver;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.exceptions.Exceptions;
+
+/**
+ * Gets the value of a deferred variable without blocking, for the synchronous evaluations.
+ * A deferred value is considered as resolved if it completes as soon as it is subscribed (ex: <code>Maybe.just(...)</code> or an already
+ * completed <code>Maybe.cache()</code>). Otherwise, the subscription is disposed and the evaluation fails immediately.
+ *
+ * @author GraviteeSource Team
+ */
+public final class SynchronousResolver {
+
+    private SynchronousResolver() {}
+
+    /**
+     * Returns the value of the deferred source if it is already resolved.
+     *
+     * @param source the deferred source.
+     * @param name the name of the deferred variable or expression, used to report the error.
+     * @param <T> the type of the value.
+     * @return the value, <code>null</code> if the source completes empty.
+     * @throws ExpressionEvaluationException if the source is not resolved yet.
+     */
+    public static <T> T resolveNow(Maybe<T> source, String name) {
+        final SynchronousObserver<T> observer = new SynchronousObserver<>();
+        source.subscribe(observer);
+        return observer.get(name);
+    }
+
+    private static final class SynchronousObserver<T> implements MaybeObserver<T> {
+
+        private volatile boolean done;
+        private Disposable upstream;
+        private T value;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstream = d;
+        }
+
+        @Override
+        public void onSuccess(T value) {
+            this.value = value;
+            done = true;
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            this.error = e;
+            done = true;
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+        }
+
+        T get(String name) {
+            if (!done) {
+                upstream.dispose();
+                throw new ExpressionEvaluationException(
+                    name,
+                    new IllegalStateException("Deferred value is not resolved yet, it must be evaluated in a reactive way")
+                );
+            }
+
+            if (error != null) {
+                throw Exceptions.propagate(error);
+            }
+
+            return value;
+        }
+    }
+}
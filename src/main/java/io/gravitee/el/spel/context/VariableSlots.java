@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.expression.EvaluationContext;
+
+/**
+ * Gives each variable name a stable slot, the index of its value in the variables of a {@link SecuredEvaluationContext}.
+ * The variable references of a parsed expression are bound to the slot of their name once (see <code>CachedExpression</code>), evaluating them
+ * reads the value at this index instead of looking the name up.
+ * <p/>
+ * Only the names referenced by parsed expressions are registered, setting a variable never registers its name, so the number of slots is
+ * bounded by the variables the expressions use rather than by the names set at runtime. The slots are never released: once
+ * {@link #MAX_SLOTS} names have been registered, the other ones are looked up by name.
+ *
+ * @author GraviteeSource Team
+ */
+public final class VariableSlots {
+
+    public static final int NO_SLOT = -1;
+    static final int MAX_SLOTS = 4096;
+
+    private static final ConcurrentMap<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<String> NAMES = new AtomicReferenceArray<>(MAX_SLOTS);
+    private static final AtomicInteger NEXT_SLOT = new AtomicInteger();
+
+    private VariableSlots() {}
+
+    /**
+     * @param name the name of a variable referenced by a parsed expression.
+     * @return the slot of the variable, registered if needed, {@link #NO_SLOT} if there is no slot left or the name is the one of a built-in
+     * function, see {@link BuiltInFunctions}.
+     */
+    public static int slotOf(String name) {
+        final Integer slot = SLOTS.get(name);
+
+        if (slot != null) {
+            return slot;
+        }
+
+        if (NEXT_SLOT.get() >= MAX_SLOTS || BuiltInFunctions.get(name) != null) {
+            return NO_SLOT;
+        }
+
+        final Integer registered = SLOTS.computeIfAbsent(
+            name,
+            key -> {
+                final int next = NEXT_SLOT.getAndIncrement();
+
+                if (next >= MAX_SLOTS) {
+                    return null;
+                }
+
+                NAMES.set(next, key);
+                return next;
+            }
+        );
+
+        return registered == null ? NO_SLOT : registered;
+    }
+
+    /**
+     * @return the slot of the variable, {@link #NO_SLOT} if the name has never been registered.
+     */
+    static int find(String name) {
+        final Integer slot = SLOTS.get(name);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    static String nameOf(int slot) {
+        return NAMES.get(slot);
+    }
+
+    /**
+     * @return the number of slots registered so far.
+     */
+    static int size() {
+        return Math.min(NEXT_SLOT.get(), MAX_SLOTS);
+    }
+
+    /**
+     * Looks a variable up by its slot, used by the variable references bound to a slot, interpreted or compiled. Contexts not storing their
+     * variables by slot are looked up by name.
+     *
+     * @param evaluationContext the context the expression is evaluated against.
+     * @param slot the slot of the variable, see {@link #slotOf(String)}.
+     * @param name the name of the variable.
+     * @return the value of the variable.
+     */
+    public static Object lookupVariable(EvaluationContext evaluationContext, int slot, String name) {
+        final EvaluationContext context = evaluationContext instanceof StagedEvaluationContext staged
+            ? staged.getDelegate()
+            : evaluationContext;
+
+        // A subclass may override lookupVariable(String), it is then given the name.
+        if (context.getClass() == SecuredEvaluationContext.class) {
+            return ((SecuredEvaluationContext) context).lookupVariable(slot, name);
+        }
+
+        return evaluationContext.lookupVariable(name);
+    }
+}
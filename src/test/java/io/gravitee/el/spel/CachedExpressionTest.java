@@ -19,12 +19,17 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
+import io.gravitee.el.spel.context.SecuredEvaluationContext;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.standard.SpelExpression;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
@@ -82,36 +87,36 @@ public class CachedExpressionTest {
         return Stream.of(
             Arguments.of("{#deferHolder.get('val')}", Set.of("deferHolder"), "#deferHolder.get('val')"), // supports EL returning Rx object.
             Arguments.of("{#deferHolder.get('val')}", Set.of(), "#deferHolder.get('val')"), // no deferred functions holder
-            Arguments.of("Hello {#deferHolder.get('val')}", Set.of("deferHolder"), "Hello {##_7fe56cf8d36e46bf4c034549c567ee78}"), // literal + deferred
+            Arguments.of("Hello {#deferHolder.get('val')}", Set.of("deferHolder"), "Hello {##%N}"), // literal + deferred
             Arguments.of("Hello {#deferHolder.get('val')}", Set.of(), "Hello {##deferHolder.get('val')}"), // no deferred functions holder
             Arguments.of(
                 "{#deferHolder.get('val').contains('val')}",
                 Set.of("deferHolder"),
-                "#_7fe56cf8d36e46bf4c034549c567ee78.contains('val')"
+                "#%N.contains('val')"
             ), // invoking method on a deferred functions holder
             Arguments.of("{#deferHolder.get('val').contains('val')}", Set.of(), "#deferHolder.get('val').contains('val')"), // no deferred functions holder
             Arguments.of(
                 "{#something.get(#deferHolder.get('val'))}",
                 Set.of("deferHolder"),
-                "#something.get(#_7fe56cf8d36e46bf4c034549c567ee78)"
+                "#something.get(#%N)"
             ), // calling method with deferred as an argument
             Arguments.of("{#something.get(#deferHolder.get('val'))}", Set.of(), "#something.get(#deferHolder.get('val'))"), // no deferred functions holder
             Arguments.of(
                 "{#deferHolder.get('val')['X-Gravitee-Endpoint']}",
                 Set.of("deferHolder"),
-                "#_7fe56cf8d36e46bf4c034549c567ee78['X-Gravitee-Endpoint']"
+                "#%N['X-Gravitee-Endpoint']"
             ), // accessing index on deferred
             Arguments.of("{#deferHolder.get('val')['X-Gravitee-Endpoint']}", Set.of(), "#deferHolder.get('val')['X-Gravitee-Endpoint']"), // no deferred function holder
             Arguments.of(
                 "{('Hello'.contains(#deferHolder.get('val')))}",
                 Set.of("deferHolder"),
-                "('Hello'.contains(#_7fe56cf8d36e46bf4c034549c567ee78))"
+                "'Hello'.contains(#%N)"
             ), // true -> literal + deferred
             Arguments.of("{('Hello'.contains(#deferHolder.get('val')))}", Set.of(), "('Hello'.contains(#deferHolder.get('val')))"), // no deferred function holder
             Arguments.of(
                 "{#something.get('val')[#deferHolder.getInt()]}",
                 Set.of("deferHolder"),
-                "#something.get('val')[#_ed0a6c6261eb18246015ef82deb2b5fb]"
+                "#something.get('val')[#%N]"
             ) // using deferred as an indexer.
         );
     }
@@ -127,6 +132,170 @@ public class CachedExpressionTest {
         final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, deferredFunctionsHolderNames);
 
         assertNotNull(cachedExpression.getExpression());
-        assertThat(cachedExpression.getExpression().getExpressionString()).isEqualTo(expectedExpression);
+        assertThat(cachedExpression.getExpression().getExpressionString().replaceAll("#%\\d+", "#%N")).isEqualTo(expectedExpression);
+    }
+
+    @Test
+    void should_defer_nested_calls_first() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#something.get(#deferHolder.get('val')).size() > 0}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of("deferHolder"));
+
+        final List<String> names = List.copyOf(cachedExpression.expressionsToDefer().keySet());
+        final List<String> subExpressions = cachedExpression
+            .expressionsToDefer()
+            .values()
+            .stream()
+            .map(exp -> exp.getExpression().getExpressionString())
+            .toList();
+
+        assertThat(names).hasSize(3);
+        assertThat(subExpressions)
+            .containsExactly(
+                "#deferHolder.get('val')",
+                "#something.get(#" + names.get(0) + ")",
+                "#" + names.get(1) + ".size()"
+            );
+        assertThat(cachedExpression.getExpression().getExpressionString()).isEqualTo("(#" + names.get(2) + " > 0)");
+        assertThat(cachedExpression.getVariables()).containsAll(names);
+    }
+
+    @Test
+    void should_defer_the_same_call_once() {
+        final Expression parseExpression = spelExpressionParser.parseExpression(
+            "{#deferHolder.get('val')} and {#deferHolder.get('val')}"
+        );
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of("deferHolder"));
+
+        final String name = cachedExpression.expressionsToDefer().keySet().iterator().next();
+
+        assertThat(cachedExpression.expressionsToDefer()).hasSize(1);
+        assertThat(cachedExpression.getExpression().getExpressionString()).isEqualTo("{##" + name + "} and {##" + name + "}");
+    }
+
+    @Test
+    void should_not_name_a_deferred_call_like_a_variable() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#deferHolder.get('val') + #_0}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of("deferHolder"));
+
+        assertThat(cachedExpression.expressionsToDefer()).hasSize(1).doesNotContainKey("_0");
+        assertThat(cachedExpression.getVariables()).contains("_0").containsAll(cachedExpression.expressionsToDefer().keySet());
+    }
+
+    @Test
+    void should_compute_variable_paths() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#request.content.foo == #value}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of());
+
+        assertThat(cachedExpression.getVariablePaths()).containsExactlyInAnyOrder("request", "request.content", "request.content.foo", "value");
+    }
+
+    @Test
+    void should_compute_unconditional_variable_paths() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#request.headers.foo != null || #request.content == #value ? #a : #b}");
+        final CachedExpression cachedExpression = new CachedExpression(
+            parseExpression,
+            spelExpressionParser,
+            Set.of(),
+            Set.of("request.content", "value", "a", "b")
+        );
+
+        assertThat(cachedExpression.getVariablePaths())
+            .containsExactlyInAnyOrder("request", "request.headers", "request.headers.foo", "request.content", "value", "a", "b");
+        assertThat(cachedExpression.getUnconditionalVariablePaths()).containsExactlyInAnyOrder("request", "request.headers", "request.headers.foo");
+    }
+
+    @Test
+    void should_only_guard_conditional_variables_requiring_a_deferred_variable() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#request.headers.foo != null || #request.content == #value ? #a : #b}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of(), Set.of("request.content"));
+
+        assertThat(cachedExpression.getUnconditionalVariablePaths())
+            .containsExactlyInAnyOrder("request", "request.headers", "request.headers.foo", "value", "a", "b");
+        assertThat(cachedExpression.isAnalysedFor(Set.of(), Set.of("request.content", "response.content"))).isTrue();
+        assertThat(cachedExpression.isAnalysedFor(Set.of(), Set.of("request.content", "a"))).isFalse();
+    }
+
+    @Test
+    void should_not_guard_conditional_variables_without_deferred_variable() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#a == 1 && #b == 2}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of());
+
+        assertThat(cachedExpression.getUnconditionalVariablePaths()).isSameAs(cachedExpression.getVariablePaths());
+    }
+
+    @Test
+    void should_compile_conditions() {
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        context.setVariable("a", 1);
+        context.setVariable("b", 2);
+
+        for (String condition : List.of("{#a == 1 && #b == 2}", "{#a == 1 ? #b : 3}")) {
+            final Expression parseExpression = spelExpressionParser.parseExpression(condition);
+            final SpelExpression expression = (SpelExpression) new CachedExpression(parseExpression, spelExpressionParser, Set.of()).getExpression();
+
+            expression.getValue(context);
+            assertThat(expression.compileExpression()).as(condition).isTrue();
+        }
+    }
+
+    @Test
+    void should_compile_guarded_conditions() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#a == 1 && #b == 2}");
+        final SpelExpression expression = (SpelExpression) new CachedExpression(parseExpression, spelExpressionParser, Set.of(), Set.of("b"))
+            .getExpression();
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        context.setVariable("a", 1);
+        context.setVariable("b", 2);
+
+        assertThat(expression.getValue(context)).isEqualTo(true);
+        assertThat(expression.compileExpression()).isTrue();
+        assertThat(expression.getValue(context)).isEqualTo(true);
+    }
+
+    @Test
+    void should_share_the_variable_paths_when_no_variable_is_conditional() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#request.content == #value}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of());
+
+        assertThat(cachedExpression.getUnconditionalVariablePaths()).isSameAs(cachedExpression.getVariablePaths());
+    }
+
+    @Test
+    void should_bind_variables_to_their_slot() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#request.content == #value and #this != null}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of());
+
+        final SpelNode ast = ((SpelExpression) cachedExpression.getExpression()).getAST();
+        final SpelNode request = ast.getChild(0).getChild(0).getChild(0);
+        final SpelNode value = ast.getChild(0).getChild(1);
+        final SpelNode self = ast.getChild(1).getChild(0);
+
+        assertThat(request).isInstanceOf(SlotVariableReference.class);
+        assertThat(value).isInstanceOf(SlotVariableReference.class);
+        assertThat(self).isNotInstanceOf(SlotVariableReference.class);
+    }
+
+    @Test
+    void should_rebuild_an_expression_made_of_a_single_variable() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#request}");
+        final CachedExpression cachedExpression = new CachedExpression(parseExpression, spelExpressionParser, Set.of());
+
+        assertThat(((SpelExpression) cachedExpression.getExpression()).getAST()).isInstanceOf(SlotVariableReference.class);
+        assertThat(cachedExpression.getExpression().getExpressionString()).isEqualTo(parseExpression.getExpressionString());
+    }
+
+    @Test
+    void should_read_variables_by_slot_once_compiled() {
+        final Expression parseExpression = spelExpressionParser.parseExpression("{#a + #b}");
+        final SpelExpression expression = (SpelExpression) new CachedExpression(parseExpression, spelExpressionParser, Set.of()).getExpression();
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        context.setVariable("a", 1);
+        context.setVariable("b", 2);
+
+        assertThat(expression.getValue(context)).isEqualTo(3);
+        assertThat(expression.compileExpression()).isTrue();
+
+        context.setVariable("b", 40);
+        assertThat(expression.getValue(context)).isEqualTo(41);
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
+import io.gravitee.el.spel.context.SecuredResolverTestInitializer;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ExpressionCanonicalizerTest {
+
+    @BeforeEach
+    void setUp() {
+        SecuredResolverTestInitializer.reinit();
+    }
+
+    @ParameterizedTest
+    @MethodSource("canonicalizedCases")
+    void should_canonicalize_expression(String expression, String expected) {
+        assertThat(ExpressionCanonicalizer.canonicalize(expression)).isEqualTo(expected);
+    }
+
+    static Stream<Arguments> canonicalizedCases() {
+        return Stream.of(
+            Arguments.of("{ #request.id}", "{#request.id}"),
+            Arguments.of("{#request.id }", "{#request.id}"),
+            Arguments.of("{  #request.id  }", "{#request.id}"),
+            Arguments.of("{ (1 == 1) }", "{(1 == 1)}"),
+            Arguments.of("{#request.headers[\"X-Gravitee\"]}", "{#request.headers['X-Gravitee']}"),
+            Arguments.of("{ #request.headers[\"X-Gravitee\"][0] == \"value\" }", "{#request.headers['X-Gravitee'][0] == 'value'}"),
+            Arguments.of("{T(java.lang.String).format(\"%scd\", \"{2}\")}", "{T(java.lang.String).format('%scd', '{2}')}"),
+            Arguments.of("Hello { name }, {  #request.id }!", "Hello { name }, {#request.id}!"),
+            Arguments.of("{#a == \"x\"\"y\" }", "{#a == \"x\"\"y\"}"),
+            Arguments.of("{#a == \"it's\"}", "{#a == \"it's\"}"),
+            Arguments.of("{#jsonEscape('say \"hi\"') }", "{#jsonEscape('say \"hi\"')}")
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+        strings = {
+            "{#request.headers['X-Gravitee'][0]}",
+            "No expression",
+            "{ \"status\": \"OK\" }",
+            "{ '/my/path' == #request.pathInfo}",
+            "{#request.headers['X-}'] }",
+            "{#unterminated == \"value}",
+        }
+    )
+    void should_return_same_instance_when_nothing_to_canonicalize(String expression) {
+        assertThat(ExpressionCanonicalizer.canonicalize(expression)).isSameAs(expression);
+    }
+
+    @Test
+    void should_share_cached_expression_between_equivalent_expressions() {
+        final SpelExpressionParser parser = new SpelExpressionParser(ExpressionCache.create(ExpressionCacheConfiguration.defaults()));
+        final SpelTemplateContext context = new SpelTemplateContext();
+
+        final CachedExpression canonical = parser.parseAndCacheExpression("{#request.headers['X-Gravitee']}", context);
+
+        assertThat(parser.parseAndCacheExpression("{ #request.headers['X-Gravitee'] }", context)).isSameAs(canonical);
+        assertThat(parser.parseAndCacheExpression("{#request.headers[\"X-Gravitee\"]}", context)).isSameAs(canonical);
+        assertThat(parser.parseAndCacheExpression("{#request.headers['X-Gravitee']}", context)).isSameAs(canonical);
+        // The canonical expression plus one extra key per merged spelling.
+        assertThat(parser.getExpressionCache().size()).isEqualTo(3);
+        assertThat(parser.getMetrics().getCanonicalizedHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void should_count_each_spelling_merged_once() {
+        final SpelExpressionParser parser = new SpelExpressionParser(ExpressionCache.create(ExpressionCacheConfiguration.defaults()));
+        final SpelTemplateContext context = new SpelTemplateContext();
+
+        parser.parseAndCacheExpression("{ #request.headers['X-Gravitee'] }", context);
+        parser.parseAndCacheExpression("{ #request.headers['X-Gravitee'] }", context);
+        assertThat(parser.getMetrics().getCanonicalizedHitCount()).isZero();
+
+        // The canonical spelling is the key the expression has been parsed under.
+        parser.parseAndCacheExpression("{#request.headers['X-Gravitee']}", context);
+        parser.parseAndCacheExpression("{#request.headers['X-Gravitee']}", context);
+        assertThat(parser.getMetrics().getCanonicalizedHitCount()).isZero();
+
+        parser.parseAndCacheExpression("{#request.headers[\"X-Gravitee\"]}", context);
+        parser.parseAndCacheExpression("{#request.headers[\"X-Gravitee\"]}", context);
+        assertThat(parser.getMetrics().getCanonicalizedHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_report_the_spelling_of_the_caller_when_the_expression_is_known_to_fail() {
+        final SpelExpressionParser parser = new SpelExpressionParser(ExpressionCache.create(ExpressionCacheConfiguration.defaults()));
+        final SpelTemplateContext context = new SpelTemplateContext();
+
+        final Throwable first = catchThrowable(() -> parser.parseAndCacheExpression("{ #request.headers[\"X-Gravitee\"] + }", context));
+        final Throwable second = catchThrowable(() -> parser.parseAndCacheExpression("{#request.headers['X-Gravitee'] +}", context));
+        final Throwable again = catchThrowable(() -> parser.parseAndCacheExpression("{ #request.headers[\"X-Gravitee\"] + }", context));
+
+        assertThat(first).isInstanceOf(ExpressionEvaluationException.class).hasMessageContaining("{ #request.headers[\"X-Gravitee\"] + }");
+        assertThat(second).isInstanceOf(ExpressionEvaluationException.class).hasMessageContaining("{#request.headers['X-Gravitee'] +}");
+        assertThat(again).isSameAs(first);
+        assertThat(parser.getMetrics().getParseFailureCount()).isEqualTo(1);
+    }
+}
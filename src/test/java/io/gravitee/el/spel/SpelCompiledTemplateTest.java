@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static io.gravitee.el.spel.context.SecuredMethodResolver.EL_WHITELIST_LIST_KEY;
+import static io.gravitee.el.spel.context.SecuredMethodResolver.EL_WHITELIST_MODE_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.gravitee.el.CompiledTemplate;
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
+import io.gravitee.el.spel.context.SecuredResolverTestInitializer;
+import io.reactivex.rxjava3.core.Maybe;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SpelCompiledTemplateTest {
+
+    private ExpressionCache cache;
+    private SpelTemplateEngineFactory factory;
+
+    @BeforeEach
+    void init() {
+        SecuredResolverTestInitializer.reinit(
+            new MockEnvironment()
+                .withProperty(EL_WHITELIST_MODE_KEY, "append")
+                .withProperty(EL_WHITELIST_LIST_KEY + "[0]", "class io.gravitee.el.spel.TestDeferredFunctionHolder")
+        );
+        cache = ExpressionCache.create(ExpressionCacheConfiguration.defaults());
+        factory = new SpelTemplateEngineFactory(cache);
+    }
+
+    @Test
+    void should_evaluate_compiled_template_against_any_context() {
+        final CompiledTemplate template = factory.templateEngine().compile("Hello {#name}");
+
+        final TemplateEngine first = factory.templateEngine();
+        first.getTemplateContext().setVariable("name", "gravitee");
+        final TemplateEngine second = factory.templateEngine();
+        second.getTemplateContext().setVariable("name", "world");
+
+        template.eval(first.getTemplateContext(), String.class).test().assertResult("Hello gravitee");
+        template.eval(second.getTemplateContext(), String.class).test().assertResult("Hello world");
+        assertThat(template.evalNow(first.getTemplateContext(), String.class)).isEqualTo("Hello gravitee");
+    }
+
+    @Test
+    void should_evaluate_against_the_engine_by_default() {
+        final TemplateEngine delegate = factory.templateEngine();
+        final TemplateEngine engine = new TemplateEngine() {
+            @Override
+            public <T> T getValue(String expression, Class<T> clazz) {
+                return delegate.getValue(expression, clazz);
+            }
+
+            @Override
+            public <T> T evalNow(String expression, Class<T> clazz) {
+                return delegate.evalNow(expression, clazz);
+            }
+
+            @Override
+            public <T> Maybe<T> eval(String expression, Class<T> clazz) {
+                return delegate.eval(expression, clazz);
+            }
+
+            @Override
+            public TemplateContext getTemplateContext() {
+                return delegate.getTemplateContext();
+            }
+        };
+        engine.getTemplateContext().setVariable("name", "gravitee");
+
+        final CompiledTemplate template = engine.compile("Hello {#name}");
+
+        assertThat(template.getExpression()).isEqualTo("Hello {#name}");
+        template.eval(engine.getTemplateContext(), String.class).test().assertResult("Hello gravitee");
+        assertThat(template.evalNow(engine.getTemplateContext(), String.class)).isEqualTo("Hello gravitee");
+        assertThatThrownBy(() -> template.evalNow(factory.templateEngine().getTemplateContext(), String.class))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void should_remain_valid_after_cache_eviction() {
+        final CompiledTemplate template = factory.templateEngine().compile("{#value > 10}");
+        cache.clear();
+
+        final TemplateEngine engine = factory.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+
+        template.eval(engine.getTemplateContext(), Boolean.class).test().assertResult(true);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void should_evaluate_compiled_literal() {
+        final CompiledTemplate template = factory.templateEngine().compile("{ \"status\": \"UP\" }");
+
+        template.eval(factory.templateEngine().getTemplateContext(), String.class).test().assertResult("{ \"status\": \"UP\" }");
+    }
+
+    @Test
+    void should_evaluate_deferred_functions_of_a_template_compiled_without_deferred_function_holder() {
+        final CompiledTemplate template = factory.templateEngine().compile("{#custom.get('val1', 'val2')}");
+
+        final TemplateEngine engine = factory.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder());
+
+        template.eval(engine.getTemplateContext(), String.class).test().assertResult("resolved('val1', 'val2')");
+    }
+
+    @Test
+    void should_fail_to_compile_invalid_template() {
+        final TemplateEngine engine = factory.templateEngine();
+
+        assertThatThrownBy(() -> engine.compile("{#request.headers['X'}")).isInstanceOf(ExpressionEvaluationException.class);
+    }
+
+    @Test
+    void should_evaluate_compiled_template_as_primitives() {
+        final TemplateEngine engine = factory.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+
+        assertThat(factory.templateEngine().compile("{#value > 10}").evalBooleanNow(engine.getTemplateContext())).isTrue();
+        assertThat(factory.templateEngine().compile("{#value + 1}").evalLongNow(engine.getTemplateContext())).isEqualTo(43L);
+        assertThat(factory.templateEngine().compile("{#value / 4.0}").evalDoubleNow(engine.getTemplateContext())).isEqualTo(10.5);
+        factory.templateEngine().compile("{#value > 100}").evalBoolean(engine.getTemplateContext()).test().assertResult(false);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static io.gravitee.el.spel.context.SecuredMethodResolver.EL_WHITELIST_LIST_KEY;
+import static io.gravitee.el.spel.context.SecuredMethodResolver.EL_WHITELIST_MODE_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.el.BaseTemplateContext;
+import io.gravitee.el.PrecompilationReport;
+import io.gravitee.el.PrecompilationResult;
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.el.TemplateEngineFactory;
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
+import io.gravitee.el.spel.context.SecuredResolverTestInitializer;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import io.reactivex.rxjava3.core.Maybe;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SpelTemplateEngineFactoryTest {
+
+    private ExpressionCache cache;
+    private SpelExpressionParser parser;
+    private SpelTemplateEngineFactory cut;
+
+    @BeforeEach
+    void init() {
+        SecuredResolverTestInitializer.reinit(
+            new MockEnvironment()
+                .withProperty(EL_WHITELIST_MODE_KEY, "append")
+                .withProperty(EL_WHITELIST_LIST_KEY + "[0]", "class io.gravitee.el.spel.TestDeferredFunctionHolder")
+        );
+        cache = ExpressionCache.create(ExpressionCacheConfiguration.defaults());
+        parser = new SpelExpressionParser(cache);
+        cut = new SpelTemplateEngineFactory(parser);
+    }
+
+    @Test
+    void should_precompile_expressions_into_the_cache() {
+        final List<String> expressions = IntStream
+            .range(0, 100)
+            .mapToObj(i -> "{#request.headers['X-Header-" + i + "'] != null}")
+            .toList();
+
+        final PrecompilationReport report = cut.precompile(expressions);
+
+        assertThat(report.isValid()).isTrue();
+        assertThat(report.getResults()).hasSize(100).allMatch(PrecompilationResult::isCompiled);
+        assertThat(cache.size()).isEqualTo(100);
+        assertThat(cache.get("{#request.headers['X-Header-42'] != null}")).isNotNull();
+    }
+
+    @Test
+    void should_report_expressions_that_cannot_be_compiled() {
+        final PrecompilationReport report = cut.precompile(List.of("{#request.id}", "{#request.headers['X'}", "{#request.id}"));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.getResults()).hasSize(2);
+        assertThat(report.getErrors())
+            .singleElement()
+            .satisfies(error -> {
+                assertThat(error.getExpression()).isEqualTo("{#request.headers['X'}");
+                assertThat(error.isCompiled()).isFalse();
+                assertThat(error.getError()).isInstanceOf(ExpressionEvaluationException.class);
+            });
+    }
+
+    @Test
+    void should_analyse_precompiled_expression_again_when_evaluated_with_deferred_function_holder() {
+        final String expression = "{#custom.get('val1', 'val2')}";
+        cut.precompile(List.of(expression));
+        final CachedExpression precompiled = cache.get(expression);
+
+        final TemplateEngine engine = cut.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder());
+
+        engine.eval(expression, String.class).test().assertResult("resolved('val1', 'val2')");
+        assertThat(cache.get(expression)).isSameAs(precompiled);
+        assertThat(parser.parseAndCacheExpression(expression, Set.of("custom")))
+            .isNotSameAs(precompiled)
+            .isSameAs(parser.parseAndCacheExpression(expression, Set.of("custom", "other")));
+    }
+
+    @Test
+    void should_report_precompilation_outcome_by_default() {
+        final TemplateEngineFactory factory = new TemplateEngineFactory() {
+            @Override
+            public TemplateEngine templateEngine() {
+                return cut.templateEngine();
+            }
+
+            @Override
+            public TemplateEngine fromTemplateEngine(TemplateEngine templateEngine) {
+                return cut.fromTemplateEngine(templateEngine);
+            }
+        };
+
+        final PrecompilationReport report = factory.precompile(List.of("{#request.id}", "{#request.id}", "{#request.id +}"));
+
+        assertThat(report.isValid()).isFalse();
+        assertThat(report.getErrors()).extracting(PrecompilationResult::getExpression).containsExactly("{#request.id +}");
+    }
+
+    @Test
+    void should_fill_the_context_from_a_base_template_context_by_default() {
+        final TemplateEngineFactory factory = new TemplateEngineFactory() {
+            @Override
+            public TemplateEngine templateEngine() {
+                return cut.templateEngine();
+            }
+
+            @Override
+            public TemplateEngine fromTemplateEngine(TemplateEngine templateEngine) {
+                return cut.fromTemplateEngine(templateEngine);
+            }
+        };
+
+        final BaseTemplateContext base = factory.baseTemplateContext(List.of(templateContext -> templateContext.setVariable("api", "base")));
+        final TemplateEngine engine = factory.templateEngine(base);
+        engine.getTemplateContext().setVariable("api", "overridden");
+
+        assertThat(base.lookupVariable("api")).isEqualTo("base");
+        assertThat(engine.evalNow("{#api}", String.class)).isEqualTo("overridden");
+        assertThat(factory.templateEngine(base).evalNow("{#api}", String.class)).isEqualTo("base");
+        assertThat(cut.templateEngine(base).evalNow("{#api}", String.class)).isEqualTo("base");
+    }
+
+    @Test
+    void should_resolve_deferred_variables_of_compiled_conditions_only_when_needed() {
+        final String expression = "{#value > 10 || #deferred == 42}";
+        final AtomicInteger subscriptions = new AtomicInteger();
+
+        final TemplateEngine first = cut.templateEngine();
+        first.getTemplateContext().setVariable("value", 1);
+        first.getTemplateContext().setDeferredVariable("deferred", Maybe.just(42).doOnSubscribe(d -> subscriptions.incrementAndGet()));
+        first.evalBoolean(expression).test().assertResult(true);
+
+        final CachedExpression cachedExpression = parser.parseAndCacheExpression(expression, (SpelTemplateContext) first.getTemplateContext());
+        assertThat(((SpelExpression) cachedExpression.getExpression()).compileExpression()).isTrue();
+
+        final TemplateEngine shortCircuited = cut.templateEngine();
+        shortCircuited.getTemplateContext().setVariable("value", 42);
+        shortCircuited.getTemplateContext().setDeferredVariable("deferred", Maybe.just(42).doOnSubscribe(d -> subscriptions.incrementAndGet()));
+        shortCircuited.evalBoolean(expression).test().assertResult(true);
+
+        final TemplateEngine resolved = cut.templateEngine();
+        resolved.getTemplateContext().setVariable("value", 1);
+        resolved.getTemplateContext().setDeferredVariable("deferred", Maybe.just(1).doOnSubscribe(d -> subscriptions.incrementAndGet()));
+        resolved.evalBoolean(expression).test().assertResult(false);
+
+        assertThat(subscriptions).hasValue(2);
+    }
+
+    @Test
+    void should_not_evict_analyses_for_other_deferred_function_holders() {
+        final String expression = "{#custom.get('val1', 'val2')}";
+
+        final CachedExpression withoutHolder = parser.parseAndCacheExpression(expression, Set.of());
+        final CachedExpression withHolder = parser.parseAndCacheExpression(expression, Set.of("custom"));
+
+        assertThat(withHolder).isNotSameAs(withoutHolder);
+        assertThat(withHolder.isAnalysedFor(Set.of("custom"))).isTrue();
+        assertThat(withoutHolder.isAnalysedFor(Set.of("custom"))).isFalse();
+        assertThat(parser.parseAndCacheExpression(expression, Set.of())).isSameAs(withoutHolder);
+        assertThat(parser.parseAndCacheExpression(expression, Set.of("custom"))).isSameAs(withHolder);
+    }
+
+    @Test
+    void should_ignore_deferred_function_holder_names_not_referenced_as_variables() {
+        final String expression = "{#request.headers['custom'] + 'custom' + #customer}";
+
+        final CachedExpression withoutHolder = parser.parseAndCacheExpression(expression, Set.of());
+
+        assertThat(parser.parseAndCacheExpression(expression, Set.of("custom"))).isSameAs(withoutHolder);
+        assertThat(withoutHolder.isAnalysedFor(Set.of("custom"))).isTrue();
+    }
+
+    @Test
+    void should_reuse_precompiled_expression_when_not_using_deferred_function_holder() {
+        final String expression = "{#value}";
+        cut.precompile(List.of(expression));
+        final CachedExpression precompiled = cache.get(expression);
+
+        final TemplateEngine engine = cut.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder());
+        engine.getTemplateContext().setVariable("value", "gravitee");
+
+        engine.eval(expression, String.class).test().assertResult("gravitee");
+        assertThat(cache.get(expression)).isSameAs(precompiled);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.gravitee.el.CompiledTemplate;
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.TemplateEngine;
+import io.reactivex.rxjava3.core.Maybe;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SpelTemplateEnginePoolTest {
+
+    private final SpelTemplateEnginePool cut = new SpelTemplateEnginePool(new SpelExpressionParser(), 2);
+
+    @Test
+    void should_reuse_the_released_engine_with_an_empty_context() {
+        final PooledSpelTemplateEngine engine = cut.acquire();
+        engine.getTemplateContext().setVariable("value", "foo");
+        engine.getTemplateContext().setDeferredVariable("deferred", Maybe.just("bar"));
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("holder", new TestDeferredFunctionHolder());
+        assertThat(engine.eval("{#deferred}", String.class).blockingGet()).isEqualTo("bar");
+
+        engine.release();
+        final PooledSpelTemplateEngine reused = cut.acquire();
+
+        assertThat(cut.available()).isZero();
+        assertThat(reused.spelTemplateContext()).isSameAs(engine.templateContext);
+        assertThat(reused.getTemplateContext().lookupVariable("value")).isNull();
+        assertThat(reused.eval("{#deferred}", String.class).blockingGet()).isNull();
+        assertThat(reused.evalNow("{#holder == null}", Boolean.class)).isTrue();
+    }
+
+    @Test
+    void should_fail_to_use_a_released_engine() {
+        final PooledSpelTemplateEngine engine = cut.acquire();
+        engine.release();
+
+        assertThatThrownBy(() -> engine.evalNow("{#value}", String.class)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> engine.eval("{#value}", String.class)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(engine::getTemplateContext).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(engine::release).isInstanceOf(IllegalStateException.class);
+        assertThat(cut.available()).isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_to_use_a_stale_reference_to_an_engine_acquired_again() {
+        final PooledSpelTemplateEngine engine = cut.acquire();
+        final TemplateContext templateContext = engine.getTemplateContext();
+        final CompiledTemplate compiledTemplate = engine.compile("{#value}");
+        final Maybe<String> evaluation = engine.eval("{#value}", String.class);
+        final Maybe<Boolean> condition = engine.evalBoolean("{#value == 'foo'}");
+        engine.release();
+
+        final PooledSpelTemplateEngine reused = cut.acquire();
+        reused.getTemplateContext().setVariable("value", "foo");
+
+        assertThatThrownBy(() -> engine.evalNow("{#value}", String.class)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(engine::getTemplateContext).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(engine::release).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new SpelTemplateEngine(engine)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> templateContext.lookupVariable("value")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> templateContext.setVariable("value", "bar")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> compiledTemplate.evalNow(templateContext, String.class)).isInstanceOf(IllegalStateException.class);
+        evaluation.test().assertError(IllegalStateException.class);
+        condition.test().assertError(IllegalStateException.class);
+
+        assertThat(reused.evalNow("{#value}", String.class)).isEqualTo("foo");
+        assertThat(compiledTemplate.evalNow(reused.getTemplateContext(), String.class)).isEqualTo("foo");
+    }
+
+    @Test
+    void should_fail_to_subscribe_to_an_evaluation_of_a_compiled_template_once_released() {
+        final PooledSpelTemplateEngine engine = cut.acquire();
+        final CompiledTemplate compiledTemplate = engine.compile("{#value}");
+        final Maybe<String> evaluation = compiledTemplate.eval(engine.getTemplateContext(), String.class);
+        engine.release();
+        cut.acquire().getTemplateContext().setVariable("value", "foo");
+
+        evaluation.test().assertError(IllegalStateException.class);
+    }
+
+    @Test
+    void should_keep_at_most_the_max_size_of_engines_per_thread() {
+        final PooledSpelTemplateEngine first = cut.acquire();
+        final PooledSpelTemplateEngine second = cut.acquire();
+        final PooledSpelTemplateEngine third = cut.acquire();
+
+        first.release();
+        second.release();
+        third.release();
+
+        assertThat(cut.available()).isEqualTo(2);
+    }
+
+    @Test
+    void should_drop_an_engine_released_by_another_thread() throws InterruptedException {
+        final PooledSpelTemplateEngine engine = cut.acquire();
+
+        final Thread thread = new Thread(engine::release);
+        thread.start();
+        thread.join();
+
+        assertThat(cut.available()).isZero();
+        assertThat(cut.acquire().spelTemplateContext()).isNotSameAs(engine.templateContext);
+        assertThatThrownBy(() -> engine.evalNow("{#value}", String.class)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void should_not_clear_the_variables_shared_with_a_forked_engine() {
+        final PooledSpelTemplateEngine engine = cut.acquire();
+        engine.getTemplateContext().setVariable("value", "foo");
+        engine.getTemplateContext().setDeferredVariable("deferred", Maybe.just("bar"));
+        final TemplateEngine fork = new SpelTemplateEngine(engine);
+
+        engine.release();
+
+        assertThat(fork.evalNow("{#value}", String.class)).isEqualTo("foo");
+        assertThat(fork.eval("{#deferred}", String.class).blockingGet()).isEqualTo("bar");
+    }
+
+    @Test
+    void should_get_pooled_engines_from_the_template_engine() {
+        final TemplateEngine engine = TemplateEngine.pooledTemplateEngine();
+        engine.release();
+
+        assertThat(engine).isInstanceOf(PooledSpelTemplateEngine.class);
+        assertThat(TemplateEngine.pooledTemplateEngine()).isInstanceOf(PooledSpelTemplateEngine.class);
+        assertThatThrownBy(() -> engine.evalNow("{#value}", String.class)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void should_do_nothing_when_releasing_an_engine_not_pooled() {
+        final TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", "foo");
+
+        engine.release();
+
+        assertThat(engine.evalNow("{#value}", String.class)).isEqualTo("foo");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TemplateScannerTest {
+
+    // Regular expression formerly used to rewrite the expression prefixes, kept as the reference implementation.
+    private static final Pattern EXPRESSION_REGEX_PATTERN = Pattern.compile("\\{ *([#T(])((?>[^{}]+|\\{(?>[^{}]+)*\\})*\\})");
+    private static final Pattern JAVA_STRING_LITERAL = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    @ParameterizedTest
+    @ValueSource(
+        strings = {
+            "{#request.id}",
+            "{ #request.id}",
+            "{   (1 == 1)}",
+            "{T(java.lang.Math).max(1, 2)}",
+            "Header: {#request.headers['X-Gravitee'][0]} and {#request.id}",
+            "{#jsonEscape({'hello', 'world'})}",
+            "{#a{b{c}}}",
+            "{ \"status\": {#response.status} }",
+            "{ '/my/path' == #request.pathInfo}",
+            "{#unclosed",
+            "{{#request.id}}",
+            "}{#}{T}{(}{ }",
+            "",
+            "No expression",
+        }
+    )
+    void should_rewrite_like_the_regular_expression(String template) {
+        assertThat(TemplateScanner.rewrite(template)).isEqualTo(rewriteWithRegex(template));
+    }
+
+    @ParameterizedTest
+    @MethodSource("templateEngineTestCorpus")
+    void should_rewrite_template_engine_test_corpus_like_the_regular_expression(String template) {
+        assertThat(TemplateScanner.rewrite(template)).isEqualTo(rewriteWithRegex(template));
+    }
+
+    @Test
+    void should_rewrite_random_templates_like_the_regular_expression() {
+        final char[] alphabet = { '{', '}', '#', 'T', '(', ')', ' ', '\'', '"', 'a', '[', ']' };
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            final char[] template = new char[random.nextInt(24)];
+            for (int j = 0; j < template.length; j++) {
+                template[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+
+            final String value = new String(template);
+            assertThat(TemplateScanner.rewrite(value)).as(value).isEqualTo(rewriteWithRegex(value));
+        }
+    }
+
+    @Test
+    void should_return_same_instance_when_no_expression() {
+        final String template = "{ \"name\": \"gravitee\" }";
+
+        assertThat(TemplateScanner.rewrite(template)).isSameAs(template);
+    }
+
+    static Stream<String> templateEngineTestCorpus() throws IOException {
+        final String source = Files.readString(Path.of("src/test/java/io/gravitee/el/spel/context/SpelTemplateEngineTest.java"));
+        final Matcher matcher = JAVA_STRING_LITERAL.matcher(source);
+        final List<String> templates = new ArrayList<>();
+
+        while (matcher.find()) {
+            final String literal = unescape(matcher.group(1));
+            if (literal.indexOf('{') >= 0) {
+                templates.add(literal);
+            }
+        }
+
+        assertThat(templates).isNotEmpty();
+        return templates.stream();
+    }
+
+    private static String unescape(String literal) {
+        return literal.replace("\\\"", "\"").replace("\\'", "'").replace("\\n", "\n").replace("\\t", "\t").replace("\\\\", "\\");
+    }
+
+    private static String rewriteWithRegex(String template) {
+        return EXPRESSION_REGEX_PATTERN.matcher(template).replaceAll(SpelExpressionParser.EXPRESSION_PREFIX + "$1$2");
+    }
+}
@@ -15,11 +15,13 @@
  */
 package io.gravitee.el.spel;
 
+import io.gravitee.el.annotations.Memoizable;
 import io.gravitee.el.spel.context.DeferredFunctionHolder;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Jeoffrey HAEYAERT (jeoffrey.haeyaert at graviteesource.com)
@@ -28,6 +30,7 @@ import java.util.concurrent.TimeUnit;
 public class TestDeferredFunctionHolder implements DeferredFunctionHolder {
 
     private final Integer delay;
+    private final AtomicInteger calls = new AtomicInteger();
 
     public TestDeferredFunctionHolder() {
         this.delay = null;
@@ -42,6 +45,7 @@ public class TestDeferredFunctionHolder implements DeferredFunctionHolder {
     }
 
     public Maybe<String> get(String val1, String val2) {
+        calls.incrementAndGet();
         Maybe<String> maybe = Maybe.just("resolved('" + val1 + "', '" + val2 + "')");
 
         if (delay != null) {
@@ -51,6 +55,27 @@ public class TestDeferredFunctionHolder implements DeferredFunctionHolder {
         return maybe;
     }
 
+    @Memoizable
+    public Maybe<String> getMemoized(String val) {
+        calls.incrementAndGet();
+        return Maybe.fromCallable(() -> "memoized('" + val + "')");
+    }
+
+    @Memoizable(shared = true)
+    public Maybe<String> getShared(String val) {
+        // Counts the lookups rather than the calls, concurrent calls share the same lookup.
+        Maybe<String> maybe = Maybe.fromCallable(() -> {
+            calls.incrementAndGet();
+            return "shared('" + val + "')";
+        });
+
+        if (delay != null) {
+            return maybe.delay(delay, TimeUnit.MILLISECONDS);
+        }
+
+        return maybe;
+    }
+
     public Maybe<List<String>> getList(String val1, String val2) {
         Maybe<List<String>> maybe = Maybe.just(List.of("resolved('" + val1 + "')", "resolged('" + val2 + "')"));
 
@@ -60,4 +85,8 @@ public class TestDeferredFunctionHolder implements DeferredFunctionHolder {
 
         return maybe;
     }
+
+    public int getCalls() {
+        return calls.get();
+    }
 }
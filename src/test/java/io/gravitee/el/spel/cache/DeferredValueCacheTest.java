@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import static io.gravitee.el.spel.cache.DeferredValueCacheConfiguration.EL_DEFERRED_CACHE_NEGATIVE_TTL_KEY;
+import static io.gravitee.el.spel.cache.DeferredValueCacheConfiguration.EL_DEFERRED_CACHE_REFRESH_AHEAD_KEY;
+import static io.gravitee.el.spel.cache.DeferredValueCacheConfiguration.EL_DEFERRED_CACHE_TTL_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class DeferredValueCacheTest {
+
+    private final ManualTicker ticker = new ManualTicker();
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Test
+    void should_fetch_the_value_once_until_it_expires() {
+        final DeferredValueCache cut = new DeferredValueCache(DeferredValueCacheConfiguration.builder().ttlInMs(1000).build(), ticker);
+
+        cut.single("key", lookup()).test().assertResult(1);
+        cut.single("key", lookup()).test().assertResult(1);
+        ticker.advance(Duration.ofMillis(1001));
+        cut.single("key", lookup()).test().assertResult(2);
+
+        assertThat(cut.getMetrics().getHitCount()).isEqualTo(1);
+        assertThat(cut.getMetrics().getMissCount()).isEqualTo(2);
+        assertThat(cut.getMetrics().getHitRatio()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    void should_refresh_the_value_ahead_of_its_expiration() {
+        final DeferredValueCache cut = new DeferredValueCache(
+            DeferredValueCacheConfiguration.builder().ttlInMs(1000).refreshAheadInMs(800).build(),
+            ticker
+        );
+
+        cut.single("key", lookup()).test().assertResult(1);
+        ticker.advance(Duration.ofMillis(900));
+
+        // The cached value is served while being refreshed.
+        cut.single("key", lookup()).test().assertResult(1);
+        // Past the original expiration, the refreshed value is served.
+        ticker.advance(Duration.ofMillis(300));
+        cut.single("key", lookup()).test().assertResult(2);
+
+        assertThat(lookups).hasValue(2);
+        assertThat(cut.getMetrics().getRefreshCount()).isEqualTo(1);
+        assertThat(cut.getMetrics().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_refresh_the_value_only_once_at_a_time() {
+        final DeferredValueCache cut = new DeferredValueCache(
+            DeferredValueCacheConfiguration.builder().ttlInMs(1000).refreshAheadInMs(500).build(),
+            ticker
+        );
+        final MaybeSubject<Integer> refresh = MaybeSubject.create();
+
+        cut.single("key", lookup()).test().assertResult(1);
+        ticker.advance(Duration.ofMillis(600));
+        cut.maybe("key", refresh.doOnSubscribe(d -> lookups.incrementAndGet())).test().assertResult(1);
+        cut.maybe("key", refresh.doOnSubscribe(d -> lookups.incrementAndGet())).test().assertResult(1);
+        assertThat(lookups).hasValue(2);
+
+        refresh.onSuccess(10);
+        cut.single("key", lookup()).test().assertResult(10);
+    }
+
+    @Test
+    void should_retry_a_failed_refresh_after_a_back_off() {
+        final DeferredValueCache cut = new DeferredValueCache(
+            DeferredValueCacheConfiguration.builder().ttlInMs(1000).refreshAheadInMs(600).build(),
+            ticker
+        );
+        final Single<Integer> failure = Single
+            .<Integer>error(new RuntimeException("Mock exception"))
+            .doOnSubscribe(d -> lookups.incrementAndGet());
+
+        cut.single("key", lookup()).test().assertResult(1);
+        ticker.advance(Duration.ofMillis(700));
+        cut.single("key", failure).test().assertResult(1);
+        cut.single("key", failure).test().assertResult(1);
+        assertThat(lookups).hasValue(2);
+
+        // Retried once the back-off, a quarter of the 400ms refresh window, has elapsed.
+        ticker.advance(Duration.ofMillis(101));
+        cut.single("key", lookup()).test().assertResult(1);
+        cut.single("key", lookup()).test().assertResult(3);
+        assertThat(cut.getMetrics().getRefreshCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_retry_an_empty_refresh_after_a_back_off() {
+        final DeferredValueCache cut = new DeferredValueCache(
+            DeferredValueCacheConfiguration.builder().ttlInMs(1000).refreshAheadInMs(600).build(),
+            ticker
+        );
+        final Maybe<Integer> empty = Maybe.<Integer>empty().doOnSubscribe(d -> lookups.incrementAndGet());
+
+        cut.single("key", lookup()).test().assertResult(1);
+        ticker.advance(Duration.ofMillis(700));
+        for (int i = 0; i < 10; i++) {
+            cut.maybe("key", empty).test().assertResult(1);
+        }
+        assertThat(lookups).hasValue(2);
+
+        ticker.advance(Duration.ofMillis(101));
+        cut.maybe("key", empty).test().assertResult(1);
+        assertThat(lookups).hasValue(3);
+    }
+
+    @Test
+    void should_coalesce_concurrent_lookups_of_a_missing_value() {
+        final DeferredValueCache cut = new DeferredValueCache(DeferredValueCacheConfiguration.defaults(), ticker);
+        final MaybeSubject<String> subject = MaybeSubject.create();
+        final Maybe<String> lookup = subject.doOnSubscribe(d -> lookups.incrementAndGet());
+
+        final var first = cut.maybe("key", lookup).test();
+        final var second = cut.maybe("key", lookup).test();
+        subject.onSuccess("value");
+
+        first.assertResult("value");
+        second.assertResult("value");
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void should_not_remember_failures_by_default() {
+        final DeferredValueCache cut = new DeferredValueCache(DeferredValueCacheConfiguration.defaults(), ticker);
+
+        cut.maybe("key", Maybe.error(new RuntimeException("Mock exception"))).test().assertError(RuntimeException.class);
+        cut.maybe("key", Maybe.empty()).test().assertResult();
+        cut.maybe("key", Maybe.just("value")).test().assertResult("value");
+    }
+
+    @Test
+    void should_remember_empty_and_failed_lookups_when_negative_caching_is_enabled() {
+        final DeferredValueCache cut = new DeferredValueCache(
+            DeferredValueCacheConfiguration.builder().ttlInMs(10000).negativeTtlInMs(100).build(),
+            ticker
+        );
+
+        cut.maybe("empty", Maybe.empty()).test().assertResult();
+        cut.maybe("empty", Maybe.just("value")).test().assertResult();
+        cut.maybe("error", Maybe.error(new RuntimeException("Mock exception"))).test().assertError(RuntimeException.class);
+        cut.maybe("error", Maybe.just("value")).test().assertError(RuntimeException.class);
+
+        ticker.advance(Duration.ofMillis(101));
+        cut.maybe("empty", Maybe.just("value")).test().assertResult("value");
+        cut.maybe("error", Maybe.just("value")).test().assertResult("value");
+    }
+
+    @Test
+    void should_fetch_again_once_invalidated() {
+        final DeferredValueCache cut = new DeferredValueCache(DeferredValueCacheConfiguration.defaults(), ticker);
+
+        cut.single("key", lookup()).test().assertResult(1);
+        cut.invalidate("key");
+        cut.single("key", lookup()).test().assertResult(2);
+    }
+
+    @Test
+    void should_load_configuration_from_environment() {
+        final MockEnvironment environment = new MockEnvironment()
+            .withProperty(EL_DEFERRED_CACHE_TTL_KEY, "30000")
+            .withProperty(EL_DEFERRED_CACHE_REFRESH_AHEAD_KEY, "20000")
+            .withProperty(EL_DEFERRED_CACHE_NEGATIVE_TTL_KEY, "1000");
+
+        final DeferredValueCacheConfiguration configuration = DeferredValueCacheConfiguration.from(environment);
+
+        assertThat(configuration.getMaxSize()).isEqualTo(DeferredValueCacheConfiguration.DEFAULT_MAX_SIZE);
+        assertThat(configuration.getTtlInMs()).isEqualTo(30000);
+        assertThat(configuration.getRefreshAheadInMs()).isEqualTo(20000);
+        assertThat(configuration.getNegativeTtlInMs()).isEqualTo(1000);
+    }
+
+    @Test
+    void should_reject_a_refresh_ahead_not_lower_than_the_time_to_live() {
+        final MockEnvironment environment = new MockEnvironment()
+            .withProperty(EL_DEFERRED_CACHE_TTL_KEY, "30000")
+            .withProperty(EL_DEFERRED_CACHE_REFRESH_AHEAD_KEY, "30000");
+
+        assertThatThrownBy(() -> DeferredValueCacheConfiguration.from(environment)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DeferredValueCacheConfiguration.builder().ttlInMs(1000).refreshAheadInMs(2000).build())
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Single<Integer> lookup() {
+        return Single.fromCallable(lookups::incrementAndGet);
+    }
+}
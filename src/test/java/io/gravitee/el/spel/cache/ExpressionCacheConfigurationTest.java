@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import static io.gravitee.el.spel.cache.ExpressionCacheConfiguration.EL_CACHE_EVICTION_KEY;
+import static io.gravitee.el.spel.cache.ExpressionCacheConfiguration.EL_CACHE_MAX_SIZE_KEY;
+import static io.gravitee.el.spel.cache.ExpressionCacheConfiguration.EL_CACHE_TTL_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ExpressionCacheConfigurationTest {
+
+    @Test
+    void should_use_defaults_when_no_environment() {
+        final ExpressionCacheConfiguration configuration = ExpressionCacheConfiguration.from(null);
+
+        assertThat(configuration.getMaxSize()).isEqualTo(ExpressionCacheConfiguration.DEFAULT_MAX_SIZE);
+        assertThat(configuration.getTtlInMs()).isEqualTo(ExpressionCacheConfiguration.DEFAULT_TTL_MILLIS);
+        assertThat(configuration.getEvictionPolicy()).isEqualTo(ExpressionCacheEvictionPolicy.IDLE);
+    }
+
+    @Test
+    void should_load_configuration_from_environment() {
+        final MockEnvironment environment = new MockEnvironment()
+            .withProperty(EL_CACHE_MAX_SIZE_KEY, "500")
+            .withProperty(EL_CACHE_TTL_KEY, "60000")
+            .withProperty(EL_CACHE_EVICTION_KEY, "write");
+
+        final ExpressionCacheConfiguration configuration = ExpressionCacheConfiguration.from(environment);
+
+        assertThat(configuration.getMaxSize()).isEqualTo(500);
+        assertThat(configuration.getTtlInMs()).isEqualTo(60000);
+        assertThat(configuration.getEvictionPolicy()).isEqualTo(ExpressionCacheEvictionPolicy.WRITE);
+    }
+
+    @Test
+    void should_cache_expressions_in_the_parser_own_cache() {
+        final ExpressionCache cache = ExpressionCache.create(ExpressionCacheConfiguration.builder().maxSize(10).build());
+        final SpelExpressionParser parser = new SpelExpressionParser(cache);
+
+        parser.parseAndCacheExpression("{#request.id}", new SpelTemplateContext());
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("{#request.id}")).isNotNull();
+    }
+}
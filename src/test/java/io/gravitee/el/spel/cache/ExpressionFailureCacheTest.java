@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import io.gravitee.el.exceptions.ExpressionEvaluationException;
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.context.SpelTemplateContext;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ExpressionFailureCacheTest {
+
+    private static final String INVALID_EXPRESSION = "{#request.headers['X-Gravitee'}";
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SpelExpressionParser parser;
+
+    @BeforeEach
+    void init() {
+        final ExpressionCacheConfiguration configuration = ExpressionCacheConfiguration.builder().failureTtlInMs(1000).build();
+        parser = new SpelExpressionParser(ExpressionCache.create(configuration), new ExpressionFailureCache(configuration, nanos::get));
+    }
+
+    @Test
+    void should_return_the_same_failure_without_parsing_again() {
+        final Throwable first = catchThrowable(() -> parser.parseAndCacheExpression(INVALID_EXPRESSION, new SpelTemplateContext()));
+        final Throwable second = catchThrowable(() -> parser.parseAndCacheExpression(INVALID_EXPRESSION, new SpelTemplateContext()));
+
+        assertThat(first).isInstanceOf(ExpressionEvaluationException.class).hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(second).isSameAs(first);
+        assertThat(parser.getMetrics().getParseFailureCount()).isEqualTo(1);
+        assertThat(parser.getMetrics().getFailureHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_parse_again_once_the_failure_has_expired() {
+        final Throwable first = catchThrowable(() -> parser.parseAndCacheExpression(INVALID_EXPRESSION, new SpelTemplateContext()));
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1001));
+
+        final Throwable second = catchThrowable(() -> parser.parseAndCacheExpression(INVALID_EXPRESSION, new SpelTemplateContext()));
+
+        assertThat(second).isInstanceOf(ExpressionEvaluationException.class).isNotSameAs(first);
+        assertThat(parser.getMetrics().getParseFailureCount()).isEqualTo(2);
+        assertThat(parser.getMetrics().getFailureHitCount()).isZero();
+    }
+
+    @Test
+    void should_not_cache_valid_expressions_as_failures() {
+        parser.parseAndCacheExpression("{#request.id}", new SpelTemplateContext());
+
+        assertThat(parser.getMetrics().getParseFailureCount()).isZero();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.el.spel.CachedExpression;
+import io.gravitee.el.spel.SpelExpressionParser;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TinyLfuExpressionCacheTest {
+
+    private static final int MAX_SIZE = 100;
+
+    private CachedExpression cachedExpression;
+    private TinyLfuExpressionCache cut;
+
+    @BeforeEach
+    void init() {
+        final SpelExpressionParser parser = new SpelExpressionParser();
+        cachedExpression = new CachedExpression(parser.parseExpression("{#request.id}"), parser, Set.of());
+        cut = new TinyLfuExpressionCache(ExpressionCacheConfiguration.builder().maxSize(MAX_SIZE).build(), Runnable::run);
+    }
+
+    @Test
+    void should_keep_hot_expressions_during_a_burst_of_one_off_expressions() {
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < MAX_SIZE / 2; i++) {
+                getOrPut("hot-" + i);
+            }
+        }
+
+        // Hot expressions keep being evaluated while one-off expressions are flowing.
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < MAX_SIZE * 2; i++) {
+                getOrPut("cold-" + round + "-" + i);
+            }
+            for (int i = 0; i < MAX_SIZE / 2; i++) {
+                getOrPut("hot-" + i);
+            }
+        }
+
+        final long missCount = cut.stats().getMissCount();
+
+        for (int i = 0; i < MAX_SIZE / 2; i++) {
+            assertThat(cut.get("hot-" + i)).isNotNull();
+        }
+        assertThat(cut.stats().getMissCount()).isEqualTo(missCount);
+        assertThat(cut.size()).isLessThanOrEqualTo(MAX_SIZE);
+    }
+
+    @Test
+    void should_record_stats() {
+        getOrPut("expression");
+        getOrPut("expression");
+        getOrPut("expression");
+
+        final ExpressionCacheStats stats = cut.stats();
+
+        assertThat(stats.getHitCount()).isEqualTo(2);
+        assertThat(stats.getMissCount()).isEqualTo(1);
+        assertThat(stats.hitRatio()).isEqualTo(2.0 / 3);
+    }
+
+    private void getOrPut(String key) {
+        if (cut.get(key) == null) {
+            cut.put(key, cachedExpression);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SingleFlightTest {
+
+    private final SingleFlight cut = new SingleFlight(10);
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Test
+    void should_share_the_lookup_in_flight() {
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        final TestObserver<String> first = cut.maybe("key", () -> lookup(subject)).test();
+        final TestObserver<String> second = cut.maybe("key", () -> lookup(subject)).test();
+        first.assertNotComplete();
+        second.assertNotComplete();
+
+        subject.onSuccess("value");
+
+        first.assertResult("value");
+        second.assertResult("value");
+        assertThat(lookups).hasValue(1);
+        assertThat(cut.inFlight()).isZero();
+    }
+
+    @Test
+    void should_trigger_a_new_lookup_once_completed() {
+        cut.maybe("key", () -> lookup(Maybe.just("first"))).test().assertResult("first");
+        cut.maybe("key", () -> lookup(Maybe.just("second"))).test().assertResult("second");
+
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    void should_not_share_lookups_of_different_keys() {
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        cut.maybe("key1", () -> lookup(subject)).test();
+        cut.maybe("key2", () -> lookup(subject)).test();
+
+        assertThat(lookups).hasValue(2);
+        assertThat(cut.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void should_forget_a_failed_lookup() {
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        final TestObserver<String> obs = cut.maybe("key", () -> lookup(subject)).test();
+        subject.onError(new RuntimeException("Mock exception"));
+
+        obs.assertError(RuntimeException.class);
+        assertThat(cut.inFlight()).isZero();
+        cut.maybe("key", () -> lookup(Maybe.just("value"))).test().assertResult("value");
+    }
+
+    @Test
+    void should_not_share_lookups_beyond_the_limit() {
+        final SingleFlight bounded = new SingleFlight(1);
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        bounded.maybe("key1", () -> lookup(subject)).test();
+        bounded.maybe("key2", () -> lookup(subject)).test();
+        bounded.maybe("key2", () -> lookup(subject)).test();
+
+        assertThat(lookups).hasValue(3);
+        assertThat(bounded.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void should_share_a_single_lookup_in_flight() {
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        final TestObserver<String> first = cut.single("key", () -> lookup(subject).toSingle()).test();
+        final TestObserver<String> second = cut.single("key", () -> lookup(subject).toSingle()).test();
+        subject.onSuccess("value");
+
+        first.assertResult("value");
+        second.assertResult("value");
+        assertThat(lookups).hasValue(1);
+    }
+
+    private Maybe<String> lookup(Maybe<String> source) {
+        return source.doOnSubscribe(d -> lookups.incrementAndGet());
+    }
+}
@@ -18,12 +18,19 @@ package io.gravitee.el.spel.context;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
 
+import io.gravitee.el.DeferredVariableOptions;
 import io.gravitee.el.spel.CachedExpression;
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.cache.DeferredValueCache;
+import io.gravitee.el.spel.cache.DeferredValueCacheConfiguration;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Maybe;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.subjects.MaybeSubject;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -60,6 +67,18 @@ class SpelTemplateContextTest {
         assertNotNull(cut.lookupVariable("jsonEscape"));
     }
 
+    @Test
+    void shouldNotStoreBuiltInFunctionsInContextVariables() {
+        assertTrue(((SecuredEvaluationContext) cut.getContext()).getVariables().isEmpty());
+        assertSame(SpelTemplateContext.JSON_PATH_EVAL_METHOD, cut.lookupVariable("jsonPath"));
+    }
+
+    @Test
+    void shouldNotOverrideBuiltInFunctions() {
+        cut.setVariable("jsonPath", VARIABLE_VALUE);
+        assertSame(SpelTemplateContext.JSON_PATH_EVAL_METHOD, cut.lookupVariable("jsonPath"));
+    }
+
     @Test
     void shouldSetVariable() {
         final String value = VARIABLE_VALUE;
@@ -71,7 +90,7 @@ class SpelTemplateContextTest {
     void shouldTriggerCompletable() {
         final Completable completable = Completable.complete();
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of(VARIABLE_NAME));
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
         cut.setDeferredVariable(VARIABLE_NAME, completable);
 
         final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
@@ -84,7 +103,7 @@ class SpelTemplateContextTest {
     void shouldTriggerMaybe() {
         final Maybe<String> maybe = Maybe.just(VARIABLE_VALUE);
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of(VARIABLE_NAME));
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
         cut.setDeferredVariable(VARIABLE_NAME, maybe);
 
         final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
@@ -100,7 +119,7 @@ class SpelTemplateContextTest {
     void shouldTriggerSingle() {
         final Single<String> single = Single.just(VARIABLE_VALUE);
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of(VARIABLE_NAME));
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
         cut.setDeferredVariable(VARIABLE_NAME, single);
 
         final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
@@ -116,10 +135,15 @@ class SpelTemplateContextTest {
     void shouldTriggerMaybeWhenSubVariableExpression() {
         final Maybe<String> maybe = Maybe.just(VARIABLE_VALUE);
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of(VARIABLE_NAME + ".sub.variable"));
+        final SpelExpressionParser parser = new SpelExpressionParser();
+        final CachedExpression subVariableExpression = new CachedExpression(
+            parser.parseExpression("{#" + VARIABLE_NAME + ".sub.variable}"),
+            parser,
+            Set.of()
+        );
         cut.setDeferredVariable(VARIABLE_NAME, maybe);
 
-        final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
+        final TestObserver<EvaluationContext> obs = cut.evaluationContext(subVariableExpression).test();
 
         obs.assertValue(evaluationContext -> {
             assertEquals(VARIABLE_VALUE, evaluationContext.lookupVariable(VARIABLE_NAME));
@@ -135,7 +159,7 @@ class SpelTemplateContextTest {
         final Maybe<String> maybe3 = Maybe.just(VARIABLE_VALUE + "3");
         final Maybe<String> maybe4 = Maybe.just(VARIABLE_VALUE + "4");
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of(VARIABLE_NAME + "1", VARIABLE_NAME + "3", VARIABLE_NAME + "4"));
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME + "1", VARIABLE_NAME + "3", VARIABLE_NAME + "4"));
         cut.setDeferredVariable(VARIABLE_NAME + "1", maybe1);
         cut.setDeferredVariable(VARIABLE_NAME + "2", maybe2); // Not in the list of variables. Should not be resolved.
         cut.setDeferredVariable(VARIABLE_NAME + "3", maybe3);
@@ -157,7 +181,7 @@ class SpelTemplateContextTest {
     void shouldErrorWhenResolutionReturnsError() {
         final Single<String> single = Single.error(new RuntimeException(MOCK_EXCEPTION));
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of(VARIABLE_NAME));
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
         cut.setDeferredVariable(VARIABLE_NAME, single);
 
         final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
@@ -169,7 +193,7 @@ class SpelTemplateContextTest {
     void shouldNotAddVariableIfNotUsedInTheExpression() {
         final Single<String> single = Single.just(VARIABLE_VALUE);
 
-        when(cachedExpression.getVariables()).thenReturn(Set.of());
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of());
         cut.setDeferredVariable(VARIABLE_NAME, single);
 
         final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
@@ -192,4 +216,169 @@ class SpelTemplateContextTest {
         obs.assertValueCount(1);
         obs.assertComplete();
     }
+
+    @Test
+    void shouldResolveDeferredVariableOnce() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final Completable completable = Completable.fromAction(subscriptions::incrementAndGet);
+
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
+        cut.setDeferredVariable(VARIABLE_NAME, completable);
+
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+        cut.evaluationContextNow(cachedExpression);
+
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void shouldShareDeferredVariableResolutionInProgress() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
+        cut.setDeferredVariable(VARIABLE_NAME, subject.doOnSubscribe(d -> subscriptions.incrementAndGet()));
+
+        final TestObserver<EvaluationContext> first = cut.evaluationContext(cachedExpression).test();
+        final TestObserver<EvaluationContext> second = cut.evaluationContext(cachedExpression).test();
+        first.assertNotComplete();
+        second.assertNotComplete();
+
+        subject.onSuccess(VARIABLE_VALUE);
+
+        first.assertComplete();
+        second.assertComplete();
+        assertEquals(1, subscriptions.get());
+        assertEquals(VARIABLE_VALUE, cut.lookupVariable(VARIABLE_NAME));
+    }
+
+    @Test
+    void shouldShareFailureInProgressAndResolveAgainAfterwards() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final MaybeSubject<String> subject = MaybeSubject.create();
+
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
+        cut.setDeferredVariable(
+            VARIABLE_NAME,
+            Maybe.defer(() -> subscriptions.incrementAndGet() == 1 ? subject : Maybe.just(VARIABLE_VALUE))
+        );
+
+        final TestObserver<EvaluationContext> first = cut.evaluationContext(cachedExpression).test();
+        final TestObserver<EvaluationContext> second = cut.evaluationContext(cachedExpression).test();
+        subject.onError(new RuntimeException(MOCK_EXCEPTION));
+
+        first.assertError(RuntimeException.class);
+        second.assertError(RuntimeException.class);
+        assertEquals(1, subscriptions.get());
+
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+        assertEquals(2, subscriptions.get());
+        assertEquals(VARIABLE_VALUE, cut.lookupVariable(VARIABLE_NAME));
+    }
+
+    @Test
+    void shouldResolveVolatileDeferredVariableOnEachEvaluation() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final Single<Integer> single = Single.fromCallable(subscriptions::incrementAndGet);
+
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
+        cut.setDeferredVariable(VARIABLE_NAME, single, DeferredVariableOptions.builder().memoized(false).build());
+
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+
+        assertEquals(2, subscriptions.get());
+        assertEquals(2, cut.lookupVariable(VARIABLE_NAME));
+    }
+
+    @Test
+    void shouldResolveAgainWhenDeferredVariableIsReplaced() {
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
+        cut.setDeferredVariable(VARIABLE_NAME, Maybe.just(VARIABLE_VALUE));
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+
+        cut.setDeferredVariable(VARIABLE_NAME, Maybe.just("otherValue"));
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+
+        assertEquals("otherValue", cut.lookupVariable(VARIABLE_NAME));
+    }
+
+    @Test
+    void shouldLimitDeferredVariablesResolvedConcurrently() {
+        final MaybeSubject<String> first = MaybeSubject.create();
+        final MaybeSubject<String> second = MaybeSubject.create();
+
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of("first", "second"));
+        cut.setDeferredVariablesMaxConcurrency(1);
+        cut.setDeferredVariable("first", first);
+        cut.setDeferredVariable("second", second);
+
+        final TestObserver<EvaluationContext> obs = cut.evaluationContext(cachedExpression).test();
+        assertEquals(1, (first.hasObservers() ? 1 : 0) + (second.hasObservers() ? 1 : 0));
+
+        (first.hasObservers() ? first : second).onSuccess(VARIABLE_VALUE);
+        obs.assertNotComplete();
+        assertTrue(first.hasObservers() || second.hasObservers());
+
+        (first.hasObservers() ? first : second).onSuccess(VARIABLE_VALUE);
+        obs.assertComplete();
+    }
+
+    @Test
+    void shouldResolveCheapestDeferredVariablesFirst() {
+        final MaybeSubject<String> remote = MaybeSubject.create();
+        final MaybeSubject<String> local = MaybeSubject.create();
+
+        cut.setDeferredVariablesMaxConcurrency(1);
+        cut.setDeferredVariable("remote", remote, DeferredVariableOptions.builder().cost(10).build());
+        cut.setDeferredVariable("local", local, DeferredVariableOptions.builder().cost(1).build());
+
+        final TestObserver<Void> obs = cut.resolveDeferredVariables(List.of("remote", "local")).test();
+        assertTrue(local.hasObservers());
+        assertFalse(remote.hasObservers());
+
+        local.onSuccess("localValue");
+        assertTrue(remote.hasObservers());
+
+        remote.onSuccess("remoteValue");
+        obs.assertComplete();
+        assertEquals("localValue", cut.lookupVariable("local"));
+        assertEquals("remoteValue", cut.lookupVariable("remote"));
+    }
+
+    @Test
+    void shouldRejectNonPositiveMaxConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> cut.setDeferredVariablesMaxConcurrency(0));
+    }
+
+    @Test
+    void shouldShareCachedDeferredVariableAcrossContexts() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final Single<Integer> single = Single.fromCallable(subscriptions::incrementAndGet);
+        final DeferredVariableOptions options = DeferredVariableOptions
+            .builder()
+            .cacheKey("key")
+            .cache(new DeferredValueCache(DeferredValueCacheConfiguration.defaults()))
+            .build();
+
+        when(cachedExpression.getVariablePaths()).thenReturn(Set.of(VARIABLE_NAME));
+        final SpelTemplateContext other = new SpelTemplateContext();
+        cut.setDeferredVariable(VARIABLE_NAME, single, options);
+        other.setDeferredVariable(VARIABLE_NAME, single, options);
+
+        cut.evaluationContext(cachedExpression).test().assertComplete();
+        other.evaluationContext(cachedExpression).test().assertComplete();
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(1, other.lookupVariable(VARIABLE_NAME));
+    }
+
+    @Test
+    void shouldNotCacheCompletableDeferredVariable() {
+        final DeferredVariableOptions options = DeferredVariableOptions.builder().cacheKey("key").build();
+
+        assertThrows(IllegalArgumentException.class, () -> cut.setDeferredVariable(VARIABLE_NAME, Completable.complete(), options));
+    }
 }
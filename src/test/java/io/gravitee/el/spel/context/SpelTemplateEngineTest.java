@@ -18,18 +18,27 @@ package io.gravitee.el.spel.context;
 import static io.gravitee.el.spel.context.SecuredMethodResolver.EL_WHITELIST_LIST_KEY;
 import static io.gravitee.el.spel.context.SecuredMethodResolver.EL_WHITELIST_MODE_KEY;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 import io.gravitee.common.util.LinkedMultiValueMap;
 import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.el.BaseTemplateContext;
 import io.gravitee.el.TemplateContext;
 import io.gravitee.el.TemplateEngine;
+import io.gravitee.el.TemplateVariableProvider;
+import io.gravitee.el.annotations.Memoizable;
 import io.gravitee.el.exceptions.ExpressionEvaluationException;
 import io.gravitee.el.spel.EvaluableRequest;
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.SpelTemplateEngine;
 import io.gravitee.el.spel.Request;
 import io.gravitee.el.spel.TestDeferredFunctionHolder;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
 import io.gravitee.gateway.api.Response;
 import io.gravitee.gateway.api.context.SimpleExecutionContext;
 import io.gravitee.gateway.api.http.HttpHeaders;
@@ -39,6 +48,7 @@ import io.vertx.core.Vertx;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
@@ -77,7 +87,8 @@ class SpelTemplateEngineTest {
     void init() {
         ConfigurableEnvironment environment = new MockEnvironment()
             .withProperty(EL_WHITELIST_MODE_KEY, "append")
-            .withProperty(EL_WHITELIST_LIST_KEY + "[0]", "class io.gravitee.el.spel.TestDeferredFunctionHolder");
+            .withProperty(EL_WHITELIST_LIST_KEY + "[0]", "class io.gravitee.el.spel.TestDeferredFunctionHolder")
+            .withProperty(EL_WHITELIST_LIST_KEY + "[1]", "class " + MemoizableHolder.class.getName());
         reinitSecuredResolver(environment);
     }
 
@@ -363,6 +374,26 @@ class SpelTemplateEngineTest {
         engine.eval(content, String.class).test().assertResult("Hello gravitee");
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = { "https://api.gravitee.io/echo", "{ \"status\": \"UP\" }", "" })
+    void should_return_plain_text_as_is(String content) {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+
+        engine.eval(content, String.class).test().assertResult(content);
+        engine.eval(content, String.class).test().assertResult(content);
+        assertThat(engine.evalNow(content, String.class)).isEqualTo(content);
+    }
+
+    @Test
+    void should_convert_plain_text_to_expected_type() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+
+        engine.eval("42", Integer.class).test().assertResult(42);
+        engine.eval("", Boolean.class).test().assertComplete().assertNoValues();
+        assertThat(engine.evalNow("true", Boolean.class)).isTrue();
+        engine.eval("not a number", Integer.class).test().assertError(ExpressionEvaluationException.class);
+    }
+
     @Test
     void should_evaluate_deferred_functions() {
         TemplateEngine engine = TemplateEngine.templateEngine();
@@ -395,6 +426,73 @@ class SpelTemplateEngineTest {
         engine.eval(content, String.class).test().awaitDone(1, TimeUnit.SECONDS).assertResult("resolved('val1', 'val2')");
     }
 
+    @Test
+    void should_evaluate_deferred_functions_of_different_expressions_concurrently() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder(100));
+
+        Maybe<String> first = engine.eval("{#custom.get('a', 'b') + '!'}", String.class);
+        Maybe<String> second = engine.eval("{#custom.get('c', 'd') + '?'}", String.class);
+
+        Maybe
+            .zip(first, second, (a, b) -> a + b)
+            .test()
+            .awaitDone(1, TimeUnit.SECONDS)
+            .assertResult("resolved('a', 'b')!resolved('c', 'd')?");
+    }
+
+    @Test
+    void should_not_mistake_a_variable_for_a_deferred_call() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder());
+        engine.getTemplateContext().setVariable("_0", "variable");
+        engine.getTemplateContext().setVariable("_1", "other");
+
+        engine
+            .eval("{#custom.get('a', 'b') + ' ' + #_0 + ' ' + #custom.get('c', 'd') + ' ' + #_1}", String.class)
+            .test()
+            .assertResult("resolved('a', 'b') variable resolved('c', 'd') other");
+    }
+
+    @Test
+    void should_evaluate_now_deferred_functions_already_resolved() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder());
+
+        assertThat(engine.evalNow("{#custom.get('val1', 'val2')}", String.class)).isEqualTo("resolved('val1', 'val2')");
+        assertThat(engine.evalNow("Value: {#custom.get('val1', 'val2')}", String.class)).isEqualTo("Value: resolved('val1', 'val2')");
+    }
+
+    @Test
+    void should_evaluate_now_deferred_variables_already_resolved() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setDeferredVariable("deferred", Maybe.just("value"));
+
+        assertThat(engine.evalNow("{#deferred}", String.class)).isEqualTo("value");
+    }
+
+    @Test
+    void should_fail_fast_when_evaluating_now_deferred_values_not_resolved_yet() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("custom", new TestDeferredFunctionHolder(200));
+        engine.getTemplateContext().setDeferredVariable("deferred", Maybe.never());
+
+        assertThrows(ExpressionEvaluationException.class, () -> engine.evalNow("{#custom.get('val1', 'val2')}", String.class));
+        assertThrows(ExpressionEvaluationException.class, () -> engine.evalNow("{#deferred}", String.class));
+    }
+
+    @Test
+    void should_evaluate_now_using_expression_cache() {
+        final ExpressionCache cache = ExpressionCache.create(ExpressionCacheConfiguration.defaults());
+        final TemplateEngine engine = new SpelTemplateEngine(new SpelExpressionParser(cache));
+        engine.getTemplateContext().setVariable("name", "gravitee");
+
+        assertThat(engine.evalNow("Hello {#name}", String.class)).isEqualTo("Hello gravitee");
+        assertThat(engine.getValue("Hello {#name}", String.class)).isEqualTo("Hello gravitee");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.stats().getHitCount()).isEqualTo(1);
+    }
+
     @Test
     void should_evaluate_deferred_functions_with_list_index() {
         TemplateEngine engine = TemplateEngine.templateEngine();
@@ -910,7 +1008,23 @@ class SpelTemplateEngineTest {
     void should_throw_parsing_exception_with_wrong_expression() {
         String wrongExpression = "{#";
         final TemplateEngine engine = TemplateEngine.templateEngine();
-        engine.eval(wrongExpression, Boolean.class).test().assertFailure(IllegalArgumentException.class);
+        engine
+            .eval(wrongExpression, Boolean.class)
+            .test()
+            .assertFailure(ExpressionEvaluationException.class)
+            .assertError(throwable -> throwable.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void should_return_same_failure_for_an_expression_failing_to_parse_again() {
+        final String wrongExpression = "{#request.headers['X-Gravitee'}";
+        final TemplateEngine engine = TemplateEngine.templateEngine();
+
+        final Throwable first = catchThrowable(() -> engine.eval(wrongExpression, String.class).blockingGet());
+        final Throwable second = catchThrowable(() -> engine.eval(wrongExpression, String.class).blockingGet());
+
+        assertThat(first).isInstanceOf(ExpressionEvaluationException.class);
+        assertThat(second).isSameAs(first);
     }
 
     @Test
@@ -1134,14 +1248,58 @@ class SpelTemplateEngineTest {
 
         assertThat(clonedEngine).isNotSameAs(originalEngine);
         assertThat(clonedTemplateContext).isNotSameAs(originalTemplateContext);
-        assertThat(clonedTemplateContext.getVariables()).isNotSameAs(originalTemplateContext.getVariables());
-        assertThat(clonedTemplateContext.getDeferredVariables()).isNotSameAs(originalTemplateContext.getDeferredVariables());
-        assertThat(clonedTemplateContext.getDeferredFunctionsHolders()).isNotSameAs(originalTemplateContext.getDeferredFunctionsHolders());
 
         assertThat(clonedTemplateContext.getVariables())
             .contains(Map.entry("test", "hello"), Map.entry("defferedFunction", deferredFunctionHolder));
         assertThat(clonedTemplateContext.getDeferredVariables()).contains(Map.entry("defferedVariable", defferedValue));
         assertThat(clonedTemplateContext.getDeferredFunctionsHolders()).contains(Map.entry("defferedFunction", deferredFunctionHolder));
+
+        // The maps are shared until one of both contexts modifies them.
+        clonedTemplateContext.setVariable("cloned", "value");
+        clonedTemplateContext.setDeferredVariable("clonedDeferred", defferedValue);
+        clonedTemplateContext.setDeferredFunctionHolderVariable("clonedFunction", deferredFunctionHolder);
+        originalTemplateContext.setVariable("original", "value");
+
+        assertThat(originalTemplateContext.getVariables()).doesNotContainKeys("cloned", "clonedFunction");
+        assertThat(originalTemplateContext.getDeferredVariables()).doesNotContainKey("clonedDeferred");
+        assertThat(originalTemplateContext.getDeferredFunctionsHolders()).doesNotContainKey("clonedFunction");
+        assertThat(clonedTemplateContext.getVariables()).doesNotContainKey("original");
+    }
+
+    @Test
+    void should_not_affect_the_clone_when_mutating_the_original() {
+        final TemplateEngine originalEngine = TemplateEngine.templateEngine();
+        originalEngine.getTemplateContext().setVariable("payload", "value");
+        originalEngine.getTemplateContext().setDeferredVariable("deferred", Maybe.just("value"));
+        final TemplateEngine clonedEngine = TemplateEngine.fromTemplateEngine(originalEngine);
+
+        originalEngine.getTemplateContext().setVariable("payload", "changed");
+        originalEngine.getTemplateContext().setDeferredVariable("deferred", Maybe.just("changed"));
+
+        assertThat(clonedEngine.evalNow("{#payload} {#deferred}", String.class)).isEqualTo("value value");
+        assertThat(originalEngine.evalNow("{#payload} {#deferred}", String.class)).isEqualTo("changed changed");
+    }
+
+    @Test
+    void should_keep_sharing_the_registrations_when_evaluating_deferred_calls_on_a_cloned_engine() {
+        final AtomicInteger subscriptions = new AtomicInteger();
+        final TemplateEngine originalEngine = TemplateEngine.templateEngine();
+        originalEngine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", new TestDeferredFunctionHolder());
+        originalEngine.getTemplateContext().setDeferredVariable("deferred", Maybe.just("value").doOnSubscribe(d -> subscriptions.incrementAndGet()));
+        final TemplateEngine clonedEngine = TemplateEngine.fromTemplateEngine(originalEngine);
+        final SpelTemplateContext originalTemplateContext = (SpelTemplateContext) originalEngine.getTemplateContext();
+        final SpelTemplateContext clonedTemplateContext = (SpelTemplateContext) clonedEngine.getTemplateContext();
+
+        for (int i = 0; i < 2; i++) {
+            clonedEngine
+                .eval("{#deferHolder.get('val1', 'val2') + #deferred}", String.class)
+                .test()
+                .awaitDone(1, TimeUnit.SECONDS)
+                .assertResult("resolved('val1', 'val2')value");
+        }
+
+        assertThat(clonedTemplateContext.getDeferredVariables()).isSameAs(originalTemplateContext.getDeferredVariables()).containsOnlyKeys("deferred");
+        assertThat(subscriptions).hasValue(1);
     }
 
     @Test
@@ -1272,4 +1430,322 @@ class SpelTemplateEngineTest {
 
         assertThat(engine.evalNow("{#jsonEscape(#msg)}", String.class)).isEqualTo("say \\\"hi\\\"");
     }
+
+    @Test
+    void should_evaluate_on_each_subscription_when_no_deferred_variable_is_required() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("name", "first");
+
+        final Maybe<String> result = engine.eval("{#name}", String.class);
+
+        result.test().assertValue("first");
+        engine.getTemplateContext().setVariable("name", "second");
+        result.test().assertValue("second");
+    }
+
+    @Test
+    void should_complete_empty_when_no_deferred_variable_is_required_and_the_result_is_null() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+
+        engine.eval("{#missing}", String.class).test().assertComplete().assertNoValues();
+    }
+
+    @Test
+    void should_emit_the_error_when_no_deferred_variable_is_required_and_the_evaluation_fails() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+
+        engine.eval("{#missing.length()}", String.class).test().assertError(ExpressionEvaluationException.class);
+    }
+
+    @Test
+    void should_evaluate_conditions_as_primitive_booleans() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+
+        assertThat(engine.evalBooleanNow("{#value > 10}")).isTrue();
+        assertThat(engine.evalBooleanNow("{#value < 10}")).isFalse();
+        assertThat(engine.evalBooleanNow("{#missing}")).isFalse();
+        assertThat(engine.evalBooleanNow("true")).isTrue();
+        assertThat(engine.evalBooleanNow("{('true')}")).isTrue();
+    }
+
+    @Test
+    void should_evaluate_variables_set_after_the_expression_is_compiled() {
+        TemplateEngine engine = TemplateEngine.templateEngine(BaseTemplateContext.of(List.of(context -> context.setVariable("base", 100))));
+
+        // SpEL compiles the expression after a hundred evaluations.
+        for (int i = 0; i < 300; i++) {
+            engine.getTemplateContext().setVariable("value", i);
+            assertThat(engine.evalNow("{#value + #base}", Integer.class)).isEqualTo(i + 100);
+        }
+
+        engine.getTemplateContext().setVariable("base", 1);
+        assertThat(engine.evalNow("{#value + #base}", Integer.class)).isEqualTo(300);
+    }
+
+    @Test
+    void should_evaluate_conditions_reactively() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+        engine.getTemplateContext().setDeferredVariable("deferred", Maybe.just(42).delay(10, TimeUnit.MILLISECONDS));
+
+        engine.evalBoolean("{#value > 10}").test().assertResult(true);
+        engine.evalBoolean("{#missing}").test().assertResult();
+        engine.evalBoolean("{#deferred == 42}").test().awaitDone(1, TimeUnit.SECONDS).assertResult(true);
+        engine.evalBoolean("{#value.foo()}").test().assertError(ExpressionEvaluationException.class);
+    }
+
+    @Test
+    void should_evaluate_conditions_on_subscription() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", 1);
+
+        final Maybe<Boolean> condition = engine.evalBoolean("{#value > 10}");
+        engine.getTemplateContext().setVariable("value", 42);
+
+        condition.test().assertResult(true);
+    }
+
+    @Test
+    void should_evaluate_conditions_calling_deferred_functions() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", new TestDeferredFunctionHolder());
+
+        engine.evalBoolean("{#deferHolder.get('val1', 'val2') == \"resolved('val1', 'val2')\"}").test().awaitDone(1, TimeUnit.SECONDS).assertResult(true);
+    }
+
+    @Test
+    void should_evaluate_numbers_as_primitives() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+        engine.getTemplateContext().setVariable("text", "12");
+
+        assertThat(engine.evalLongNow("{#value * 2}")).isEqualTo(84L);
+        assertThat(engine.evalLongNow("{#text}")).isEqualTo(12L);
+        assertThat(engine.evalLongNow("12")).isEqualTo(12L);
+        assertThat(engine.evalDoubleNow("{#value / 4.0}")).isEqualTo(10.5);
+        assertThat(engine.evalDoubleNow("{#value}")).isEqualTo(42.0);
+    }
+
+    @Test
+    void should_fail_to_evaluate_null_as_a_primitive_number() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+
+        assertThatThrownBy(() -> engine.evalLongNow("{#missing}")).isInstanceOf(ExpressionEvaluationException.class);
+        assertThatThrownBy(() -> engine.evalDoubleNow("{#missing}")).isInstanceOf(ExpressionEvaluationException.class);
+    }
+
+    @Test
+    void should_not_resolve_a_deferred_variable_of_a_short_circuited_branch() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final AtomicInteger subscriptions = new AtomicInteger();
+        engine.getTemplateContext().setVariable("value", 42);
+        engine
+            .getTemplateContext()
+            .setDeferredVariable("lazy", Maybe.fromCallable(() -> "b").doOnSubscribe(d -> subscriptions.incrementAndGet()).delay(10, TimeUnit.MILLISECONDS));
+
+        engine.eval("{#value > 10 || #lazy == 'b'}", Boolean.class).test().awaitDone(1, TimeUnit.SECONDS).assertResult(true);
+        engine.eval("{#value < 10 && #lazy == 'b'}", Boolean.class).test().awaitDone(1, TimeUnit.SECONDS).assertResult(false);
+        engine.eval("{#value > 10 ? 'big' : #lazy}", String.class).test().awaitDone(1, TimeUnit.SECONDS).assertResult("big");
+        assertThat(subscriptions).hasValue(0);
+
+        engine.eval("{#value < 10 || #lazy == 'b'}", Boolean.class).test().awaitDone(1, TimeUnit.SECONDS).assertResult(true);
+        engine.eval("{#value < 10 ? 'small' : #lazy}", String.class).test().awaitDone(1, TimeUnit.SECONDS).assertResult("b");
+        assertThat(subscriptions).hasValue(1);
+    }
+
+    @Test
+    void should_resolve_a_deferred_variable_used_outside_of_a_conditional_branch() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final AtomicInteger subscriptions = new AtomicInteger();
+        engine.getTemplateContext().setVariable("value", 42);
+        engine.getTemplateContext().setDeferredVariable("lazy", Maybe.fromCallable(() -> "b").doOnSubscribe(d -> subscriptions.incrementAndGet()));
+
+        engine.eval("{#lazy == 'b' || #value > 10}", Boolean.class).test().assertResult(true);
+        engine.eval("{#value > 10 || #lazy == 'b'} {#lazy}", String.class).test().assertResult("true b");
+        assertThat(subscriptions).hasValue(1);
+    }
+
+    @Test
+    void should_not_resolve_a_deferred_variable_of_a_short_circuited_branch_synchronously() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+        engine.getTemplateContext().setDeferredVariable("lazy", Maybe.just("b").delay(1, TimeUnit.SECONDS));
+        engine.getTemplateContext().setDeferredVariable("resolved", Maybe.just("c"));
+
+        // The deferred variable would fail the synchronous evaluation if it was required.
+        assertThat(engine.evalNow("{#value > 10 || #lazy == 'b'}", Boolean.class)).isTrue();
+        assertThat(engine.evalBooleanNow("{#value > 10 || #lazy == 'b'}")).isTrue();
+        assertThat(engine.evalNow("{#value < 10 ? #lazy : #resolved}", String.class)).isEqualTo("c");
+        assertThatThrownBy(() -> engine.evalNow("{#value < 10 || #lazy == 'b'}", Boolean.class)).isInstanceOf(ExpressionEvaluationException.class);
+    }
+
+    @Test
+    void should_call_a_deferred_function_of_a_conditional_branch_only_when_reached() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        engine.getTemplateContext().setVariable("value", 42);
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", new TestDeferredFunctionHolder());
+
+        engine.eval("{#value > 10 ? 'big' : #deferHolder.get('a', 'b')}", String.class).test().assertResult("big");
+        engine
+            .eval("{#value < 10 ? 'small' : #deferHolder.get('a', 'b')}", String.class)
+            .test()
+            .awaitDone(1, TimeUnit.SECONDS)
+            .assertResult("resolved('a', 'b')");
+    }
+
+    @Test
+    void should_resolve_a_nested_deferred_call_shared_by_several_calls_once() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final TestDeferredFunctionHolder deferHolder = new TestDeferredFunctionHolder(20);
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", deferHolder);
+
+        engine
+            .eval("{#deferHolder.get(#deferHolder.get('a', 'b'), 'c')} {#deferHolder.get('a', 'b')}", String.class)
+            .test()
+            .awaitDone(1, TimeUnit.SECONDS)
+            .assertResult("resolved('resolved('a', 'b')', 'c') resolved('a', 'b')");
+        assertThat(deferHolder.getCalls()).isEqualTo(2);
+    }
+
+    @Test
+    void should_resolve_nested_deferred_calls_again_on_each_evaluation() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final TestDeferredFunctionHolder deferHolder = new TestDeferredFunctionHolder();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", deferHolder);
+        engine.getTemplateContext().setVariable("value", "a");
+
+        engine.eval("{#deferHolder.get(#deferHolder.get(#value, 'b'), 'c')}", String.class).test().assertResult("resolved('resolved('a', 'b')', 'c')");
+        engine.getTemplateContext().setVariable("value", "z");
+        engine.eval("{#deferHolder.get(#deferHolder.get(#value, 'b'), 'c')}", String.class).test().assertResult("resolved('resolved('z', 'b')', 'c')");
+        assertThat(deferHolder.getCalls()).isEqualTo(4);
+    }
+
+    @Test
+    void should_resolve_identical_memoizable_calls_once_per_template_context() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final TestDeferredFunctionHolder deferHolder = new TestDeferredFunctionHolder();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", deferHolder);
+
+        engine.eval("{#deferHolder.getMemoized('a')}", String.class).test().assertResult("memoized('a')");
+        engine.eval("Hello {#deferHolder.getMemoized('a')}", String.class).test().assertResult("Hello memoized('a')");
+        assertThat(engine.evalNow("{#deferHolder.getMemoized('a')}", String.class)).isEqualTo("memoized('a')");
+        engine.eval("{#deferHolder.getMemoized('b')}", String.class).test().assertResult("memoized('b')");
+        assertThat(deferHolder.getCalls()).isEqualTo(2);
+
+        TemplateEngine other = TemplateEngine.templateEngine();
+        other.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", deferHolder);
+        other.eval("{#deferHolder.getMemoized('a')}", String.class).test().assertResult("memoized('a')");
+        assertThat(deferHolder.getCalls()).isEqualTo(3);
+    }
+
+    @Test
+    void should_memoize_the_calls_of_a_subclass_of_a_memoizable_holder() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final InheritingMemoizableHolder deferHolder = new InheritingMemoizableHolder();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", deferHolder);
+
+        engine.eval("{#deferHolder.get('a')}", String.class).test().assertResult("a");
+        engine.eval("{#deferHolder.get('a')}", String.class).test().assertResult("a");
+        assertThat(deferHolder.calls).hasValue(1);
+    }
+
+    @Test
+    void should_call_non_memoizable_methods_on_each_evaluation() {
+        TemplateEngine engine = TemplateEngine.templateEngine();
+        final TestDeferredFunctionHolder deferHolder = new TestDeferredFunctionHolder();
+        engine.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", deferHolder);
+
+        engine.eval("{#deferHolder.get('a', 'b')}", String.class).test().assertResult("resolved('a', 'b')");
+        engine.eval("{#deferHolder.get('a', 'b')}", String.class).test().assertResult("resolved('a', 'b')");
+        assertThat(deferHolder.getCalls()).isEqualTo(2);
+    }
+
+    @Test
+    void should_coalesce_shared_memoizable_calls_in_flight_across_template_contexts() {
+        final TestDeferredFunctionHolder firstHolder = new TestDeferredFunctionHolder(200);
+        final TestDeferredFunctionHolder secondHolder = new TestDeferredFunctionHolder(200);
+        TemplateEngine first = TemplateEngine.templateEngine();
+        first.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", firstHolder);
+        TemplateEngine second = TemplateEngine.templateEngine();
+        second.getTemplateContext().setDeferredFunctionHolderVariable("deferHolder", secondHolder);
+
+        final TestObserver<String> firstObs = first.eval("{#deferHolder.getShared('coalesced')}", String.class).test();
+        final TestObserver<String> secondObs = second.eval("{#deferHolder.getShared('coalesced')}", String.class).test();
+
+        firstObs.awaitDone(1, TimeUnit.SECONDS).assertResult("shared('coalesced')");
+        secondObs.awaitDone(1, TimeUnit.SECONDS).assertResult("shared('coalesced')");
+        assertThat(firstHolder.getCalls() + secondHolder.getCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void should_evaluate_against_a_base_template_context_built_once() {
+        final AtomicInteger provided = new AtomicInteger();
+        final TemplateVariableProvider provider = templateContext -> {
+            provided.incrementAndGet();
+            templateContext.setVariable("properties", Map.of("env", "prod"));
+            templateContext.setDeferredVariable("lazy", Maybe.just("deferred"));
+        };
+        final BaseTemplateContext base = BaseTemplateContext.of(List.of(provider));
+
+        final TemplateEngine first = TemplateEngine.templateEngine(base);
+        final TemplateEngine second = TemplateEngine.templateEngine(base);
+        first.getTemplateContext().setVariable("request", "first");
+
+        first.eval("{#properties['env']} {#request} {#lazy}", String.class).test().assertResult("prod first deferred");
+        second.eval("{#properties['env']} {#request} {#lazy}", String.class).test().assertResult("prod  deferred");
+        first.eval("{#jsonEscape('\"')}", String.class).test().assertResult("\\\"");
+        assertThat(provided).hasValue(1);
+    }
+
+    @Test
+    void should_override_a_base_variable_without_modifying_the_base() {
+        final BaseTemplateContext base = BaseTemplateContext.of(List.of(templateContext -> templateContext.setVariable("api", "base")));
+
+        final TemplateEngine engine = TemplateEngine.templateEngine(base);
+        engine.getTemplateContext().setVariable("api", "overridden");
+
+        assertThat(engine.evalNow("{#api}", String.class)).isEqualTo("overridden");
+        assertThat(TemplateEngine.templateEngine(base).evalNow("{#api}", String.class)).isEqualTo("base");
+        assertThat(base.lookupVariable("api")).isEqualTo("base");
+    }
+
+    @Test
+    void should_not_share_the_deferred_variables_registered_on_top_of_a_base() {
+        final BaseTemplateContext base = BaseTemplateContext.of(
+            List.of(templateContext -> templateContext.setDeferredVariable("api", Maybe.just("base")))
+        );
+
+        final TemplateEngine engine = TemplateEngine.templateEngine(base);
+        engine.getTemplateContext().setDeferredVariable("request", Maybe.just("first"));
+
+        engine.eval("{#api} {#request}", String.class).test().assertResult("base first");
+        TemplateEngine.templateEngine(base).eval("{#api} {#request}", String.class).test().assertResult("base ");
+    }
+
+    @Test
+    void should_keep_the_base_variables_on_an_engine_created_from_an_engine_with_a_base() {
+        final BaseTemplateContext base = BaseTemplateContext.of(List.of(templateContext -> templateContext.setVariable("api", "base")));
+        final TemplateEngine engine = TemplateEngine.templateEngine(base);
+        engine.getTemplateContext().setVariable("request", "value");
+
+        final TemplateEngine cloned = TemplateEngine.fromTemplateEngine(engine);
+
+        assertThat(cloned.evalNow("{#api} {#request}", String.class)).isEqualTo("base value");
+    }
+
+    @Memoizable
+    public static class MemoizableHolder implements DeferredFunctionHolder {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        public Maybe<String> get(String value) {
+            return Maybe.fromCallable(() -> {
+                calls.incrementAndGet();
+                return value;
+            });
+        }
+    }
+
+    public static class InheritingMemoizableHolder extends MemoizableHolder {}
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.context;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.gravitee.el.spel.CachedExpression;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.DisplayNameGenerator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class VariableSlotsTest {
+
+    @Test
+    void should_give_the_same_slot_to_the_same_name() {
+        final int slot = VariableSlots.slotOf("slotted");
+
+        assertThat(slot).isNotEqualTo(VariableSlots.NO_SLOT);
+        assertThat(VariableSlots.slotOf("slotted")).isEqualTo(slot);
+        assertThat(VariableSlots.find("slotted")).isEqualTo(slot);
+        assertThat(VariableSlots.nameOf(slot)).isEqualTo("slotted");
+        assertThat(VariableSlots.slotOf("other")).isNotEqualTo(slot);
+    }
+
+    @Test
+    void should_not_give_any_slot_to_built_in_functions() {
+        assertThat(VariableSlots.slotOf("jsonPath")).isEqualTo(VariableSlots.NO_SLOT);
+    }
+
+    @Test
+    void should_look_variables_up_by_slot() {
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        context.setVariable("slotted", "value");
+
+        assertThat(VariableSlots.lookupVariable(context, VariableSlots.slotOf("slotted"), "slotted")).isEqualTo("value");
+        assertThat(context.lookupVariable("slotted")).isEqualTo("value");
+    }
+
+    @Test
+    void should_hide_the_base_variable_when_set_to_null() {
+        final SlotVariables base = new SlotVariables();
+        base.put("slotted", "base");
+        final SecuredEvaluationContext context = new SecuredEvaluationContext(base);
+
+        assertThat(context.lookupVariable("slotted")).isEqualTo("base");
+
+        context.setVariable("slotted", null);
+        assertThat(context.lookupVariable("slotted")).isNull();
+        assertThat(context.getVariables()).containsEntry("slotted", null);
+    }
+
+    @Test
+    void should_size_the_variables_from_the_names_set() {
+        final int first = VariableSlots.slotOf("sized");
+        for (int i = 0; i < 100; i++) {
+            VariableSlots.slotOf("sized_" + i);
+        }
+
+        final SlotVariables variables = new SlotVariables();
+        variables.put("sized", "value");
+
+        assertThat(variables.capacity()).isEqualTo(first + 1);
+    }
+
+    @Test
+    void should_not_give_any_slot_to_deferred_calls() {
+        final io.gravitee.el.spel.SpelExpressionParser parser = new io.gravitee.el.spel.SpelExpressionParser();
+        final CachedExpression cachedExpression = parser.parseAndCacheExpression(
+            "{#deferHolder.get(#deferHolder.get('val')) + #otherHolder.get('val')}",
+            Set.of("deferHolder", "otherHolder")
+        );
+
+        assertThat(cachedExpression.expressionsToDefer()).containsOnlyKeys("%0", "%1", "%2");
+        assertThat(VariableSlots.find("%0")).isEqualTo(VariableSlots.NO_SLOT);
+    }
+
+    @Test
+    void should_not_give_any_slot_to_a_variable_only_set() {
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        context.setVariable("onlySet", "value");
+
+        assertThat(VariableSlots.find("onlySet")).isEqualTo(VariableSlots.NO_SLOT);
+        assertThat(context.lookupVariable("onlySet")).isEqualTo("value");
+        assertThat(context.getVariables()).containsEntry("onlySet", "value");
+    }
+
+    @Test
+    void should_look_up_by_slot_a_variable_set_before_its_name_got_one() {
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        context.setVariable("setBeforeParsing", "before");
+
+        final int slot = VariableSlots.slotOf("setBeforeParsing");
+        assertThat(VariableSlots.lookupVariable(context, slot, "setBeforeParsing")).isEqualTo("before");
+
+        context.setVariable("setBeforeParsing", "after");
+        assertThat(VariableSlots.lookupVariable(context, slot, "setBeforeParsing")).isEqualTo("after");
+        assertThat(context.getVariables()).containsOnly(Map.entry("setBeforeParsing", "after"));
+    }
+
+    @Test
+    void should_keep_every_variable_set_concurrently() throws InterruptedException {
+        final int count = 256;
+        for (int i = 0; i < count; i++) {
+            VariableSlots.slotOf("concurrent_" + i);
+        }
+
+        final SecuredEvaluationContext context = new SecuredEvaluationContext();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    context.setVariable("concurrent_" + index, index);
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < count; i++) {
+            assertThat(context.lookupVariable("concurrent_" + i)).isEqualTo(i);
+        }
+    }
+}
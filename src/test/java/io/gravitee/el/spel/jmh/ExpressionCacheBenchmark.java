@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.jmh;
+
+import io.gravitee.el.spel.CachedExpression;
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.cache.ExpressionCache;
+import io.gravitee.el.spel.cache.ExpressionCacheConfiguration;
+import io.gravitee.el.spel.cache.ExpressionCacheType;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark comparing the hit ratio and the throughput of the expression cache implementations under a skewed key mix.
+ * Keys are drawn from a zipfian distribution (a few hot routing / condition expressions and a long tail) mixed with a proportion of one-off expressions.
+ * <p/>
+ * Run with <code>-prof gc</code> to compare the allocation rate. The <code>hits</code> and <code>misses</code> counters give the hit ratio of each implementation.
+ *
+ * @author GraviteeSource Team
+ */
+@BenchmarkMode(Mode.Throughput)
+@Measurement(iterations = 5, time = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 2, time = 3)
+public class ExpressionCacheBenchmark {
+
+    private static final int CACHE_SIZE = 1_000;
+    private static final int DISTINCT_KEYS = 20_000;
+    private static final int TRACE_SIZE = 1 << 20;
+
+    @Param({ "TINY_LFU", "IN_MEMORY" })
+    public ExpressionCacheType type;
+
+    @Param({ "0", "20" })
+    public int oneOffPercentage;
+
+    private ExpressionCache cache;
+    private CachedExpression cachedExpression;
+    private String[] trace;
+
+    @Setup
+    public void setup() {
+        cache = ExpressionCache.create(ExpressionCacheConfiguration.builder().maxSize(CACHE_SIZE).type(type).build());
+
+        final SpelExpressionParser parser = new SpelExpressionParser();
+        cachedExpression = new CachedExpression(parser.parseExpression("{#request.headers['X-Gravitee-Endpoint']}"), parser, Set.of());
+
+        final String[] keys = new String[DISTINCT_KEYS];
+        for (int i = 0; i < DISTINCT_KEYS; i++) {
+            keys[i] = "{#request.headers['X-Header-" + i + "'] != null}";
+        }
+
+        final double[] cumulative = zipf(DISTINCT_KEYS, 1.0);
+        final Random random = new Random(42);
+
+        trace = new String[TRACE_SIZE];
+        for (int i = 0; i < TRACE_SIZE; i++) {
+            if (random.nextInt(100) < oneOffPercentage) {
+                trace[i] = "{#request.headers['X-One-Off'] == '" + i + "'}";
+            } else {
+                trace[i] = keys[indexOf(cumulative, random.nextDouble())];
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long hits;
+        public long misses;
+
+        private int position;
+
+        int next() {
+            position = (position + 1) & (TRACE_SIZE - 1);
+            return position;
+        }
+    }
+
+    @Benchmark
+    public CachedExpression getOrPut(Counters counters) {
+        final String key = trace[counters.next()];
+        CachedExpression exp = cache.get(key);
+
+        if (exp == null) {
+            counters.misses++;
+            exp = cachedExpression;
+            cache.put(key, exp);
+        } else {
+            counters.hits++;
+        }
+
+        return exp;
+    }
+
+    private static double[] zipf(int size, double skew) {
+        final double[] cumulative = new double[size];
+        double sum = 0;
+
+        for (int i = 0; i < size; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cumulative[i] = sum;
+        }
+
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+
+        return cumulative;
+    }
+
+    private static int indexOf(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cumulative[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
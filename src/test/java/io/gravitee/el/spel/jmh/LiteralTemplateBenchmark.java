@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.jmh;
+
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.SpelTemplateEngine;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark evaluating templates that don't contain any expression (e.g. a plain URL or a JSON body without expression).
+ *
+ * @author GraviteeSource Team
+ */
+@BenchmarkMode(Mode.Throughput)
+@Measurement(iterations = 5, time = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 2, time = 3)
+public class LiteralTemplateBenchmark {
+
+    @Param({ "https://api.gravitee.io/echo", "{ \"status\": \"UP\" }" })
+    public String template;
+
+    private final TemplateEngine engine = new SpelTemplateEngine(new SpelExpressionParser());
+
+    @Benchmark
+    public String engineEvalNow() {
+        return engine.evalNow(template, String.class);
+    }
+
+    @Benchmark
+    public String engineEval() {
+        return engine.eval(template, String.class).blockingGet();
+    }
+}
@@ -40,6 +40,7 @@ import org.openjdk.jmh.annotations.*;
 public class SpelTemplateEngineBenchmark {
 
     private static String expression;
+    private static final String VARIABLE_EXPRESSION = "{#context.attributes['application']}";
 
     private final TemplateEngine engine = new SpelTemplateEngine(new SpelExpressionParser());
 
@@ -63,6 +64,7 @@ public class SpelTemplateEngineBenchmark {
 
         // Sanity check.
         assertThat(engine.evalNow(expression, Boolean.class)).isEqualTo(true);
+        assertThat(engine.eval(VARIABLE_EXPRESSION, String.class).blockingGet()).isEqualTo("" + maxConditions);
     }
 
     @Getter
@@ -86,4 +88,24 @@ public class SpelTemplateEngineBenchmark {
     public void engineEval() {
         engine.eval(expression, Boolean.class).subscribe();
     }
+
+    @Benchmark
+    public boolean engineEvalBooleanNow() {
+        return engine.evalBooleanNow(expression);
+    }
+
+    @Benchmark
+    public void engineEvalBoolean() {
+        engine.evalBoolean(expression).subscribe();
+    }
+
+    @Benchmark
+    public void engineEvalVariable() {
+        engine.eval(VARIABLE_EXPRESSION, String.class).subscribe();
+    }
+
+    @Benchmark
+    public TemplateEngine engineFork() {
+        return TemplateEngine.fromTemplateEngine(engine);
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.jmh;
+
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.el.spel.SpelTemplateEngineFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark comparing a template engine created for each request with one taken from the pool of the current thread.
+ * Run it with the GC profiler (<code>-prof gc</code>) to compare the allocations per request, see <code>gc.alloc.rate.norm</code>.
+ *
+ * @author GraviteeSource Team
+ */
+@BenchmarkMode(Mode.Throughput)
+@Measurement(iterations = 5, time = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(value = 1)
+@Warmup(iterations = 2, time = 3)
+public class TemplateEnginePoolBenchmark {
+
+    private static final String EXPRESSION = "{#request.attributes['application'] == #context.attributes['application']}";
+
+    private final SpelTemplateEngineFactory factory = new SpelTemplateEngineFactory();
+    private final Attributes request = new Attributes(Map.of("application", "app"));
+    private final Attributes context = new Attributes(Map.of("application", "app"));
+
+    @Getter
+    @AllArgsConstructor
+    public static class Attributes {
+
+        private final Map<String, String> attributes;
+    }
+
+    @Benchmark
+    public boolean newEngine() {
+        return evaluate(factory.templateEngine());
+    }
+
+    @Benchmark
+    public boolean pooledEngine() {
+        final TemplateEngine engine = factory.pooledTemplateEngine();
+
+        try {
+            return evaluate(engine);
+        } finally {
+            engine.release();
+        }
+    }
+
+    private boolean evaluate(TemplateEngine engine) {
+        final TemplateContext templateContext = engine.getTemplateContext();
+        templateContext.setVariable("request", request);
+        templateContext.setVariable("context", context);
+
+        return engine.evalBooleanNow(EXPRESSION);
+    }
+}
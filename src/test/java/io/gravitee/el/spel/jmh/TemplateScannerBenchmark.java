@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.el.spel.jmh;
+
+import io.gravitee.el.spel.SpelExpressionParser;
+import io.gravitee.el.spel.TemplateScanner;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark comparing the rewriting of the expression prefixes of body templates using the former regular expression and the {@link TemplateScanner}.
+ * Templates are JSON documents mixing literal braces and expressions, from 1 KB to 1 MB.
+ *
+ * @author GraviteeSource Team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Measurement(iterations = 5, time = 5)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 2, time = 3)
+public class TemplateScannerBenchmark {
+
+    private static final Pattern EXPRESSION_REGEX_PATTERN = Pattern.compile("\\{ *([#T(])((?>[^{}]+|\\{(?>[^{}]+)*\\})*\\})");
+    private static final String EXPRESSION_REGEX_SUBSTITUTE = SpelExpressionParser.EXPRESSION_PREFIX + "$1$2";
+
+    @Param({ "1024", "65536", "1048576" })
+    public int size;
+
+    private String template;
+
+    @Setup
+    public void setup() {
+        final StringBuilder builder = new StringBuilder(size + 256).append("{ \"items\": [");
+        int i = 0;
+
+        while (builder.length() < size) {
+            builder
+                .append("{ \"id\": ")
+                .append(i)
+                .append(", \"name\": \"item-")
+                .append(i)
+                .append("\", \"host\": \"{#request.headers['X-Gravitee-Endpoint'][0]}\", \"tags\": { \"env\": \"{ #context.attributes['env'] }\" } },");
+            i++;
+        }
+
+        template = builder.append("{} ] }").toString();
+    }
+
+    @Benchmark
+    public String regex() {
+        return EXPRESSION_REGEX_PATTERN.matcher(template).replaceAll(EXPRESSION_REGEX_SUBSTITUTE);
+    }
+
+    @Benchmark
+    public String scanner() {
+        return TemplateScanner.rewrite(template);
+    }
+}